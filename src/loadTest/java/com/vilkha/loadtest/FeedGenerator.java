@@ -0,0 +1,106 @@
+package com.vilkha.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Random;
+
+public final class FeedGenerator {
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    private final FeedShape shape;
+
+    public FeedGenerator(FeedShape shape) {
+        this.shape = Objects.requireNonNull(shape);
+    }
+
+    public int rowCount() {
+        return shape.currencies() + shape.categories() + shape.offers();
+    }
+
+    public void writeTo(Path file) throws IOException {
+        Random rnd = new Random(shape.seed());
+
+        try (Writer w = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            w.write("<!DOCTYPE yml_catalog SYSTEM \"shops.dtd\">\n");
+            w.write("<yml_catalog date=\"2026-01-01 00:00\">\n<shop>\n");
+
+            w.write("<currencies>\n");
+            for (int i = 0; i < shape.currencies(); i++) {
+                w.write("<currency id=\"" + currencyId(i) + "\" rate=\"" + (i == 0 ? "1" : decimal(rnd)) + "\"/>\n");
+            }
+            w.write("</currencies>\n");
+
+            w.write("<categories>\n");
+            for (int i = 1; i <= shape.categories(); i++) {
+                w.write("<category id=\"" + i + "\"");
+                if (i > 1) w.write(" parentId=\"" + (1 + rnd.nextInt(i - 1)) + "\"");
+                w.write(">Category " + i + "</category>\n");
+            }
+            w.write("</categories>\n");
+
+            w.write("<offers>\n");
+            for (int i = 1; i <= shape.offers(); i++) {
+                writeOffer(w, rnd, i);
+            }
+            w.write("</offers>\n");
+
+            w.write("</shop>\n</yml_catalog>\n");
+        }
+    }
+
+    private void writeOffer(Writer w, Random rnd, int id) throws IOException {
+        w.write("<offer id=\"" + id + "\" available=\"" + rnd.nextBoolean() + "\">\n");
+        element(w, "vendorCode", "V" + id);
+        element(w, "price", decimal(rnd));
+        element(w, "categoryId", String.valueOf(1 + rnd.nextInt(shape.categories())));
+        element(w, "currencyId", currencyId(rnd.nextInt(shape.currencies())));
+        element(w, "name", text(rnd, Math.min(shape.textLength(), 40)));
+        element(w, "description", text(rnd, shape.textLength()));
+
+        for (int c = 0; c < shape.extraColumns(); c++) {
+            String value = switch (c % 3) {
+                case 0 -> String.valueOf(rnd.nextInt(100_000));
+                case 1 -> decimal(rnd);
+                default -> text(rnd, 1 + rnd.nextInt(16));
+            };
+            element(w, "attr" + c, value);
+        }
+
+        if (shape.params() > 0) {
+            w.write("<params>");
+            for (int p = 0; p < shape.params(); p++) {
+                w.write("<param name=\"p" + p + "\">" + text(rnd, 8) + "</param>");
+            }
+            w.write("</params>\n");
+        }
+
+        w.write("</offer>\n");
+    }
+
+    private static void element(Writer w, String name, String value) throws IOException {
+        w.write("<" + name + ">" + value + "</" + name + ">\n");
+    }
+
+    private static String currencyId(int i) {
+        return i == 0 ? "RUR" : "C" + i;
+    }
+
+    private static String decimal(Random rnd) {
+        return rnd.nextInt(10_000) + "." + (10 + rnd.nextInt(90));
+    }
+
+    private static String text(Random rnd, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(i % 8 == 7 ? ' ' : LETTERS.charAt(rnd.nextInt(LETTERS.length())));
+        }
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,77 @@
+package com.vilkha.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+public final class FeedServer implements AutoCloseable {
+
+    private static final String PATH = "/feed.xml";
+
+    private final Path file;
+    private final String etag;
+    private final HttpServer server;
+
+    public FeedServer(Path file) throws IOException {
+        this.file = Objects.requireNonNull(file);
+        this.etag = "\"" + Files.size(file) + "-" + Files.getLastModifiedTime(file).toMillis() + "\"";
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            if (!"GET".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            ex.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+                ex.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            ex.getResponseHeaders().set("Content-Type", "application/xml; charset=UTF-8");
+            String acceptEncoding = ex.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+            try (InputStream in = Files.newInputStream(file)) {
+                if (gzip) {
+                    ex.getResponseHeaders().set("Content-Encoding", "gzip");
+                    ex.sendResponseHeaders(200, 0);
+                    try (OutputStream out = new GZIPOutputStream(ex.getResponseBody(), 1 << 16)) {
+                        in.transferTo(out);
+                    }
+                } else {
+                    ex.sendResponseHeaders(200, Files.size(file));
+                    try (OutputStream out = ex.getResponseBody()) {
+                        in.transferTo(out);
+                    }
+                }
+            }
+        } finally {
+            ex.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.vilkha.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class FeedShape {
+
+    private final int offers;
+    private final int extraColumns;
+    private final int params;
+    private final int textLength;
+    private final int categories;
+    private final int currencies;
+    private final long seed;
+
+    public FeedShape(int offers, int extraColumns, int params, int textLength,
+                     int categories, int currencies, long seed) {
+        if (offers < 1) throw new IllegalArgumentException("offers must be positive: " + offers);
+        if (categories < 1) throw new IllegalArgumentException("categories must be positive: " + categories);
+        if (currencies < 1) throw new IllegalArgumentException("currencies must be positive: " + currencies);
+        if (extraColumns < 0 || params < 0 || textLength < 0) {
+            throw new IllegalArgumentException("columns, params and text length must not be negative");
+        }
+        this.offers = offers;
+        this.extraColumns = extraColumns;
+        this.params = params;
+        this.textLength = textLength;
+        this.categories = categories;
+        this.currencies = currencies;
+        this.seed = seed;
+    }
+
+    public int offers() {
+        return offers;
+    }
+
+    public int extraColumns() {
+        return extraColumns;
+    }
+
+    public int params() {
+        return params;
+    }
+
+    public int textLength() {
+        return textLength;
+    }
+
+    public int categories() {
+        return categories;
+    }
+
+    public int currencies() {
+        return currencies;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public Map<String, String> toProperties() {
+        Map<String, String> p = new LinkedHashMap<>();
+        p.put("shape.offers", String.valueOf(offers));
+        p.put("shape.columns", String.valueOf(extraColumns));
+        p.put("shape.params", String.valueOf(params));
+        p.put("shape.text", String.valueOf(textLength));
+        p.put("shape.categories", String.valueOf(categories));
+        p.put("shape.currencies", String.valueOf(currencies));
+        p.put("shape.seed", String.valueOf(seed));
+        return p;
+    }
+}
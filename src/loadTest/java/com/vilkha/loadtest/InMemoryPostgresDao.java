@@ -0,0 +1,143 @@
+package com.vilkha.loadtest;
+
+import com.vilkha.database.PostgresDao;
+import com.vilkha.database.SqlType;
+import com.vilkha.database.UpsertResult;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Containerless stand-in for PostgreSQL: understands the DDL the service generates and applies
+ * upserts to in-memory tables, so a load test can run without a database server. It measures none of
+ * the SQL, parameter binding or batching of {@link PostgresDao}; reports recorded with it are labelled
+ * parse-only, and write-path baselines are recorded with {@code --db=jdbc}.
+ */
+public class InMemoryPostgresDao extends PostgresDao {
+
+    private static final Pattern CREATE = Pattern.compile("CREATE TABLE IF NOT EXISTS \"(\\w+)\"");
+    private static final Pattern DROP = Pattern.compile("DROP TABLE IF EXISTS \"(\\w+)\"");
+    private static final Pattern COLUMN = Pattern.compile("(?m)^\\s+\"(\\w+)\"\\s+(\\w+)");
+    private static final Pattern ADD_COLUMN = Pattern.compile("ALTER TABLE \"(\\w+)\" ADD COLUMN (?:IF NOT EXISTS )?\"(\\w+)\" (\\w+)");
+    private static final Pattern ALTER_TYPE = Pattern.compile("ALTER TABLE \"(\\w+)\" ALTER COLUMN \"(\\w+)\" TYPE (\\w+)");
+
+    private final Map<String, Map<String, String>> columns = new HashMap<>();
+    private final Map<String, Map<String, Map<String, String>>> tables = new HashMap<>();
+
+    public InMemoryPostgresDao() {
+        super(() -> {
+            throw new SQLException("in-memory stand-in has no JDBC connection");
+        });
+    }
+
+    @Override
+    public synchronized void execute(String sql) {
+        Matcher create = CREATE.matcher(sql);
+        if (create.find()) {
+            String table = create.group(1);
+            if (columns.containsKey(table)) return;
+
+            Map<String, String> cols = new TreeMap<>();
+            Matcher col = COLUMN.matcher(sql);
+            while (col.find()) cols.put(col.group(1), col.group(2));
+
+            columns.put(table, cols);
+            tables.put(table, new HashMap<>());
+            return;
+        }
+
+        Matcher drop = DROP.matcher(sql);
+        if (drop.find()) {
+            columns.remove(drop.group(1));
+            tables.remove(drop.group(1));
+            return;
+        }
+
+        Matcher add = ADD_COLUMN.matcher(sql);
+        if (add.find()) {
+            columnsOf(add.group(1)).putIfAbsent(add.group(2), add.group(3));
+            return;
+        }
+
+        Matcher alter = ALTER_TYPE.matcher(sql);
+        if (!alter.find()) {
+            throw new UnsupportedOperationException("Unsupported statement for in-memory stand-in: " + sql);
+        }
+        columnsOf(alter.group(1)).put(alter.group(2), alter.group(3));
+    }
+
+    @Override
+    public synchronized void executeWithTimeouts(List<String> statements, String lockTimeout,
+                                                 String statementTimeout) {
+        for (String sql : statements) execute(sql);
+    }
+
+    @Override
+    public synchronized Set<String> fetchColumns(String tableName) {
+        return new TreeSet<>(columns.getOrDefault(tableName, Map.of()).keySet());
+    }
+
+    @Override
+    public synchronized Map<String, String> fetchColumnTypes(String tableName) {
+        return new TreeMap<>(columns.getOrDefault(tableName, Map.of()));
+    }
+
+    @Override
+    public synchronized UpsertResult upsertBatch(
+            String tableName,
+            String keyColumn,
+            LinkedHashMap<String, SqlType> schema,
+            List<Map<String, Object>> rows
+    ) {
+        Map<String, Map<String, String>> table = Objects.requireNonNull(
+                tables.get(tableName), "table does not exist: " + tableName);
+
+        int submitted = 0;
+        int matched = 0;
+        int updated = 0;
+
+        for (Map<String, Object> row : rows) {
+            String key = normalize(row.get(keyColumn));
+            if (key == null) continue;
+            submitted++;
+
+            Map<String, String> values = new HashMap<>();
+            for (String col : schema.keySet()) {
+                String v = normalize(row.get(col));
+                if (v != null) values.put(col, v);
+            }
+
+            Map<String, String> previous = table.put(key, values);
+            if (previous != null) {
+                matched++;
+                if (!previous.equals(values)) updated++;
+            }
+        }
+
+        return new UpsertResult(submitted, matched, updated);
+    }
+
+    public synchronized int rowCount(String tableName) {
+        Map<String, Map<String, String>> table = tables.get(tableName);
+        return table == null ? 0 : table.size();
+    }
+
+    private Map<String, String> columnsOf(String tableName) {
+        return Objects.requireNonNull(columns.get(tableName), "table does not exist: " + tableName);
+    }
+
+    private static String normalize(Object raw) {
+        if (raw == null) return null;
+        String s = String.valueOf(raw).trim();
+        return s.isEmpty() ? null : s;
+    }
+}
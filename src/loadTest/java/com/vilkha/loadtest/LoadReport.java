@@ -0,0 +1,179 @@
+package com.vilkha.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+public final class LoadReport {
+
+    @FunctionalInterface
+    public interface Stage {
+        void run() throws Exception;
+    }
+
+    private static final long MIN_COMPARABLE_MS = 100;
+
+    private final FeedShape shape;
+    private final Map<String, String> settings;
+    private final LinkedHashMap<String, StageResult> stages = new LinkedHashMap<>();
+
+    public LoadReport(FeedShape shape, Map<String, String> settings) {
+        this.shape = Objects.requireNonNull(shape);
+        this.settings = new LinkedHashMap<>(settings);
+    }
+
+    public void measure(String name, long rows, Stage stage) throws Exception {
+        System.gc();
+        List<MemoryPoolMXBean> pools = heapPools();
+        for (MemoryPoolMXBean pool : pools) pool.resetPeakUsage();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        stage.run();
+
+        long wallNanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocBefore;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : pools) peakHeap += pool.getPeakUsage().getUsed();
+
+        stages.put(name, new StageResult(wallNanos, rows, peakHeap, allocated));
+    }
+
+    public Map<String, String> toProperties() {
+        Map<String, String> p = new LinkedHashMap<>(shape.toProperties());
+        settings.forEach((k, v) -> p.put("run." + k, v));
+        long totalNanos = 0;
+        for (Map.Entry<String, StageResult> e : stages.entrySet()) {
+            StageResult r = e.getValue();
+            String prefix = "stage." + e.getKey() + ".";
+            p.put(prefix + "wallMs", String.valueOf(r.wallNanos / 1_000_000));
+            p.put(prefix + "rows", String.valueOf(r.rows));
+            p.put(prefix + "rowsPerSec", String.valueOf(r.rowsPerSec()));
+            p.put(prefix + "peakHeapBytes", String.valueOf(r.peakHeap));
+            p.put(prefix + "allocatedBytes", String.valueOf(r.allocated));
+            totalNanos += r.wallNanos;
+        }
+        p.put("total.wallMs", String.valueOf(totalNanos / 1_000_000));
+        return p;
+    }
+
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("# xml-to-postgres load test report (" + settings.getOrDefault("scope", "unknown") + ")\n");
+            for (Map.Entry<String, String> e : toProperties().entrySet()) {
+                w.write(e.getKey() + "=" + e.getValue() + "\n");
+            }
+        }
+    }
+
+    public static Properties read(Path file) throws IOException {
+        Properties p = new Properties();
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            p.load(r);
+        }
+        return p;
+    }
+
+    public boolean comparableTo(Properties baseline) {
+        for (Map.Entry<String, String> e : shape.toProperties().entrySet()) {
+            if (!e.getValue().equals(baseline.getProperty(e.getKey()))) return false;
+        }
+        for (Map.Entry<String, String> e : settings.entrySet()) {
+            if (!e.getValue().equals(baseline.getProperty("run." + e.getKey()))) return false;
+        }
+        return true;
+    }
+
+    public List<String> regressions(Properties baseline, double tolerance) {
+        List<String> out = new ArrayList<>();
+        for (Map.Entry<String, StageResult> e : stages.entrySet()) {
+            if (e.getKey().equals("generate")) continue;
+
+            String prefix = "stage." + e.getKey() + ".";
+            StageResult r = e.getValue();
+            if (longProp(baseline, prefix + "wallMs") < MIN_COMPARABLE_MS) continue;
+
+            long baseRate = longProp(baseline, prefix + "rowsPerSec");
+            if (baseRate > 0 && r.rowsPerSec() < baseRate * (1 - tolerance)) {
+                out.add(e.getKey() + ": rows/s " + r.rowsPerSec() + " vs baseline " + baseRate);
+            }
+
+            long baseAlloc = longProp(baseline, prefix + "allocatedBytes");
+            if (baseAlloc > 0 && r.allocated > baseAlloc * (1 + tolerance)) {
+                out.add(e.getKey() + ": allocated " + r.allocated + " B vs baseline " + baseAlloc + " B");
+            }
+
+            long basePeak = longProp(baseline, prefix + "peakHeapBytes");
+            if (basePeak > 0 && r.peakHeap > basePeak * (1 + tolerance)) {
+                out.add(e.getKey() + ": peak heap " + r.peakHeap + " B vs baseline " + basePeak + " B");
+            }
+        }
+        return out;
+    }
+
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("settings: ").append(settings).append(System.lineSeparator());
+        sb.append(String.format("%-20s %10s %10s %12s %14s %16s%n",
+                "stage", "wall ms", "rows", "rows/s", "peak heap MB", "allocated MB"));
+        long totalNanos = 0;
+        for (Map.Entry<String, StageResult> e : stages.entrySet()) {
+            StageResult r = e.getValue();
+            sb.append(String.format("%-20s %10d %10d %12d %14.1f %16.1f%n",
+                    e.getKey(), r.wallNanos / 1_000_000, r.rows, r.rowsPerSec(),
+                    r.peakHeap / 1048576.0, r.allocated / 1048576.0));
+            totalNanos += r.wallNanos;
+        }
+        sb.append(String.format("%-20s %10d%n", "total", totalNanos / 1_000_000));
+        return sb.toString();
+    }
+
+    private static long longProp(Properties p, String key) {
+        String v = p.getProperty(key);
+        return v == null ? 0 : Long.parseLong(v.trim());
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) heap.add(pool);
+        }
+        return heap;
+    }
+
+    private static final class StageResult {
+        final long wallNanos;
+        final long rows;
+        final long peakHeap;
+        final long allocated;
+
+        StageResult(long wallNanos, long rows, long peakHeap, long allocated) {
+            this.wallNanos = wallNanos;
+            this.rows = rows;
+            this.peakHeap = peakHeap;
+            this.allocated = allocated;
+        }
+
+        long rowsPerSec() {
+            return wallNanos == 0 ? 0 : rows * 1_000_000_000L / wallNanos;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.vilkha.loadtest;
+
+import com.vilkha.database.DbConfig;
+import com.vilkha.database.JdbcConnectionFactory;
+import com.vilkha.database.PostgresDao;
+import com.vilkha.database.WriteStrategy;
+import com.vilkha.service.XmlToPostgresService;
+import com.vilkha.xml.XmlCatalogParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+public final class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+
+        FeedShape shape = new FeedShape(
+                intOpt(opts, "offers", 10_000),
+                intOpt(opts, "columns", 10),
+                intOpt(opts, "params", 5),
+                intOpt(opts, "text", 200),
+                intOpt(opts, "categories", 100),
+                intOpt(opts, "currencies", 4),
+                Long.parseLong(opts.getOrDefault("seed", "42"))
+        );
+        String db = opts.getOrDefault("db", "memory");
+        WriteStrategy strategy = WriteStrategy.parse(opts.getOrDefault("strategy", "batch"));
+        int chunkRows = intOpt(opts, "chunk", 5000);
+        String spillDir = opts.get("spill");
+        Path outDir = Path.of(opts.getOrDefault("out", "build/loadtest"));
+        Path baseline = Path.of(opts.getOrDefault("baseline", "loadtest-baseline.properties"));
+        double tolerance = Double.parseDouble(opts.getOrDefault("tolerance", "0.2"));
+
+        Files.createDirectories(outDir);
+        Path feed = outDir.resolve("feed.xml");
+
+        FeedGenerator generator = new FeedGenerator(shape);
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("db", db);
+        // the in-memory stand-in maps rows into hash maps: its load.* stages time parsing and mapping,
+        // not SQL, parameter binding, batching or round trips; write-path baselines need --db=jdbc
+        settings.put("scope", db.equals("jdbc") ? "write-path" : "parse-only");
+        settings.put("spill", String.valueOf(spillDir != null));
+        if (db.equals("jdbc")) {
+            settings.put("strategy", strategy.name().toLowerCase(Locale.ROOT));
+            settings.put("chunk", String.valueOf(chunkRows));
+        }
+        LoadReport report = new LoadReport(shape, settings);
+        report.measure("generate", generator.rowCount(), () -> generator.writeTo(feed));
+
+        try (FeedServer server = new FeedServer(feed)) {
+            XmlCatalogParser parser = new XmlCatalogParser(
+                    server.url(), spillDir == null ? null : Path.of(spillDir), null, null, 0);
+            PostgresDao dao = dao(db, opts, strategy, chunkRows);
+            XmlToPostgresService service = new XmlToPostgresService(parser, dao);
+
+            report.measure("parse", generator.rowCount(), parser::snapshot);
+            report.measure("infer", generator.rowCount(), () -> {
+                for (String table : service.getTableNames()) service.getColumnNames(table);
+            });
+            for (String table : service.getTableNames()) {
+                int rows = parser.readRows(table).size();
+                // every run measures a load into an empty table, whatever earlier runs left behind
+                dao.execute("DROP TABLE IF EXISTS \"" + table + "\"");
+                report.measure("load." + table, rows, () -> service.update(table));
+            }
+        }
+
+        report.write(outDir.resolve("report.properties"));
+        System.out.print(report.format());
+        if (!db.equals("jdbc")) {
+            System.out.println("Parse-only run: load.* stages use the in-memory stand-in and do not measure "
+                    + "SQL, binding or batching; use --db=jdbc --db-url=... to record write-path numbers");
+        }
+
+        if (opts.containsKey("save-baseline")) {
+            report.write(baseline);
+            System.out.println("Baseline saved to " + baseline);
+            return;
+        }
+
+        if (!Files.exists(baseline)) {
+            System.out.println("No baseline at " + baseline + "; run with --save-baseline to create one");
+            return;
+        }
+
+        Properties base = LoadReport.read(baseline);
+        if (!report.comparableTo(base)) {
+            System.out.println("Baseline " + baseline + " was recorded for a different feed shape or settings; not compared");
+            return;
+        }
+
+        List<String> regressions = report.regressions(base, tolerance);
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions against " + baseline);
+        } else {
+            regressions.forEach(r -> System.out.println("REGRESSION " + r));
+            System.exit(1);
+        }
+    }
+
+    private static PostgresDao dao(String db, Map<String, String> opts, WriteStrategy strategy, int chunkRows) {
+        if (db.equals("memory")) return new InMemoryPostgresDao();
+        if (!db.equals("jdbc")) throw new IllegalArgumentException("Unknown --db: " + db + ". Allowed: memory, jdbc");
+
+        // never the application's db.url: the load test drops and recreates the tables it loads
+        String url = opts.get("db-url");
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("--db=jdbc requires --db-url pointing at a scratch database");
+        }
+        DbConfig dbCfg = new DbConfig(url,
+                opts.getOrDefault("db-user", "postgres"), opts.getOrDefault("db-pass", ""));
+        return new PostgresDao(new JdbcConnectionFactory(dbCfg), true, strategy, chunkRows);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + arg);
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                opts.put(arg.substring(2), "true");
+            } else {
+                opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return opts;
+    }
+
+    private static int intOpt(Map<String, String> opts, String key, int defaultValue) {
+        String v = opts.get(key);
+        return v == null ? defaultValue : Integer.parseInt(v);
+    }
+}
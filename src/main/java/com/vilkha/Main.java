@@ -5,11 +5,19 @@ import com.vilkha.database.ConnectionFactory;
 import com.vilkha.database.DbConfig;
 import com.vilkha.database.JdbcConnectionFactory;
 import com.vilkha.database.PostgresDao;
+import com.vilkha.database.UpsertResult;
+import com.vilkha.database.WriteStrategy;
+import com.vilkha.monitoring.LoadRecording;
 import com.vilkha.service.XmlToPostgresService;
 import com.vilkha.xml.XmlCatalogParser;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
 
 
@@ -27,15 +35,44 @@ public final class Main {
 
         DbConfig dbCfg = new DbConfig(dbUrl, dbUser, dbPass);
         ConnectionFactory cf = new JdbcConnectionFactory(dbCfg);
-        PostgresDao dao = new PostgresDao(cf);
-
-        XmlCatalogParser parser = new XmlCatalogParser(xmlUrl);
-        XmlToPostgresService service = new XmlToPostgresService(parser, dao);
-
-        runInteractive(service);
+        boolean skipUnchanged = Boolean.parseBoolean(cfgFile.get("db.upsert.skip.unchanged", "true"));
+        WriteStrategy strategy = WriteStrategy.parse(cfgFile.get("db.write.strategy", "batch"));
+        // db.unnest.chunk.rows is the former name, from when only the unnest strategy was chunked
+        String chunkDefault = cfgFile.get("db.unnest.chunk.rows", "5000");
+        int chunkRows = Integer.parseInt(cfgFile.get("db.write.chunk.rows", chunkDefault));
+        PostgresDao dao = new PostgresDao(cf, skipUnchanged, strategy, chunkRows);
+
+        String spillDir = cfgFile.get("xml.spill.dir", null);
+        long cacheTtl = Long.parseLong(cfgFile.get("xml.cache.ttl.seconds", "0"));
+        long cacheIdle = Long.parseLong(cfgFile.get("xml.cache.idle.seconds", "0"));
+        long cacheMaxMb = Long.parseLong(cfgFile.get("xml.cache.max.mb", "0"));
+        long connectTimeout = Long.parseLong(cfgFile.get("xml.connect.timeout.seconds", "10"));
+        long readTimeout = Long.parseLong(cfgFile.get("xml.read.timeout.seconds", "60"));
+
+        XmlCatalogParser parser = new XmlCatalogParser(
+                xmlUrl,
+                spillDir == null ? null : Path.of(spillDir),
+                cacheTtl > 0 ? Duration.ofSeconds(cacheTtl) : null,
+                cacheIdle > 0 ? Duration.ofSeconds(cacheIdle) : null,
+                cacheMaxMb * 1024 * 1024,
+                Duration.ofSeconds(connectTimeout),
+                Duration.ofSeconds(readTimeout)
+        );
+        boolean autoEvolve = Boolean.parseBoolean(cfgFile.get("db.schema.auto.evolve", "false"));
+        boolean widenTypes = Boolean.parseBoolean(cfgFile.get("db.schema.widen.types", "false"));
+        String lockTimeout = cfgFile.get("db.schema.lock.timeout", "2s");
+        String statementTimeout = cfgFile.get("db.schema.statement.timeout", "60s");
+        XmlToPostgresService service = new XmlToPostgresService(
+                parser, dao, autoEvolve, widenTypes, lockTimeout, statementTimeout);
+
+        Path jfrFile = jfrOption(args);
+
+        runInteractive(service, jfrFile);
     }
 
-    private static void runInteractive(XmlToPostgresService service) {
+    private static void runInteractive(XmlToPostgresService service, Path jfrFile) {
+        int jfrRuns = 0;
+
         System.out.println("""
             Interactive mode.
             Commands:
@@ -45,6 +82,7 @@ public final class Main {
               update [table]
               isId <table> <column>
               ddlChange <table>
+              cache
               help
               exit
             """);
@@ -64,7 +102,7 @@ public final class Main {
                     switch (cmd) {
                         case "exit", "quit" -> { return; }
                         case "help" -> {
-                            System.out.println("tables | ddl <table> | columns <table> | update [table] | isId <table> <column> | ddlChange <table> | exit");
+                            System.out.println("tables | ddl <table> | columns <table> | update [table] | isId <table> <column> | ddlChange <table> | cache | exit");
                         }
                         case "tables" -> System.out.println(service.getTableNames());
 
@@ -87,13 +125,18 @@ public final class Main {
                         }
 
                         case "update" -> {
-                            if (p.length >= 2) {
-                                String table = requireTable(service, p[1]);
-                                service.update(table);
-                                System.out.println("OK: updated " + table);
+                            String table = p.length >= 2 ? requireTable(service, p[1]) : null;
+                            if (jfrFile == null) {
+                                runUpdate(service, table);
                             } else {
-                                service.update();
-                                System.out.println("OK: updated all");
+                                Path runFile = jfrRunFile(jfrFile, ++jfrRuns);
+                                LoadRecording recording = LoadRecording.start(runFile);
+                                try {
+                                    runUpdate(service, table);
+                                } finally {
+                                    recording.close();
+                                }
+                                System.out.println("JFR recording written to " + runFile);
                             }
                         }
 
@@ -116,6 +159,8 @@ public final class Main {
                             System.out.println(service.getDDLChange(table));
                         }
 
+                        case "cache" -> service.getCacheStats().forEach(System.out::println);
+
                         default -> System.out.println("Unknown command: " + cmd + ". Type: help");
                     }
                 } catch (Exception e) {
@@ -126,6 +171,40 @@ public final class Main {
         }
     }
 
+    private static void runUpdate(XmlToPostgresService service, String table) throws Exception {
+        if (table != null) {
+            UpsertResult result = service.update(table);
+            System.out.println("OK: updated " + table + " (" + result + ")");
+        } else {
+            Map<String, UpsertResult> results = service.update();
+            results.forEach((t, r) -> System.out.println("  " + t + ": " + r));
+            System.out.println("OK: updated all");
+        }
+    }
+
+    private static Path jfrRunFile(Path base, int run) {
+        String name = base.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : ".jfr";
+
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        return base.resolveSibling(stem + "-" + stamp + "-" + run + ext);
+    }
+
+    private static Path jfrOption(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--jfr")) {
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Usage: --jfr <file.jfr>");
+                return Path.of(args[i + 1]);
+            }
+            if (args[i].startsWith("--jfr=")) {
+                return Path.of(args[i].substring("--jfr=".length()));
+            }
+        }
+        return null;
+    }
+
     private static void require(String value, String message) {
         if (value == null || value.isBlank()) throw new IllegalArgumentException(message);
     }
@@ -1,12 +1,20 @@
 package com.vilkha.database;
 
+import com.vilkha.monitoring.BatchExecuteEvent;
+import com.vilkha.monitoring.BindEvent;
+import com.vilkha.monitoring.CommitEvent;
+
+import java.math.BigDecimal;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -20,9 +28,25 @@ public class PostgresDao {
     private static final Pattern IDENT = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
 
     private final ConnectionFactory connectionFactory;
+    private final boolean skipUnchanged;
+    private final WriteStrategy writeStrategy;
+    private final int chunkRows;
 
     public PostgresDao(ConnectionFactory connectionFactory) {
+        this(connectionFactory, true);
+    }
+
+    public PostgresDao(ConnectionFactory connectionFactory, boolean skipUnchanged) {
+        this(connectionFactory, skipUnchanged, WriteStrategy.BATCH, 5000);
+    }
+
+    public PostgresDao(ConnectionFactory connectionFactory, boolean skipUnchanged,
+                       WriteStrategy writeStrategy, int chunkRows) {
+        if (chunkRows < 1) throw new IllegalArgumentException("chunkRows must be positive: " + chunkRows);
         this.connectionFactory = Objects.requireNonNull(connectionFactory);
+        this.skipUnchanged = skipUnchanged;
+        this.writeStrategy = Objects.requireNonNull(writeStrategy);
+        this.chunkRows = chunkRows;
     }
 
     public void execute(String sql) throws Exception {
@@ -49,7 +73,50 @@ public class PostgresDao {
         return cols;
     }
 
-    public void upsertBatch(
+    public Map<String, String> fetchColumnTypes(String tableName) throws Exception {
+        String sql = """
+                SELECT column_name, data_type
+                FROM information_schema.columns
+                WHERE table_schema = 'public' AND table_name = ?
+                ORDER BY column_name
+                """;
+
+        Map<String, String> types = new LinkedHashMap<>();
+        try (Connection c = connectionFactory.get(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) types.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        return types;
+    }
+
+    public void executeWithTimeouts(List<String> statements, String lockTimeout, String statementTimeout)
+            throws Exception {
+        try (Connection c = connectionFactory.get()) {
+            c.setAutoCommit(false);
+            try {
+                // lock_timeout bounds the wait for a lock, statement_timeout how long a rewrite may hold it
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT set_config('lock_timeout', ?, true), set_config('statement_timeout', ?, true)")) {
+                    ps.setString(1, lockTimeout);
+                    ps.setString(2, statementTimeout);
+                    ps.execute();
+                }
+                try (Statement st = c.createStatement()) {
+                    for (String sql : statements) st.execute(sql);
+                }
+                c.commit();
+            } catch (Exception e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    public UpsertResult upsertBatch(
             String tableName,
             String keyColumn,
             LinkedHashMap<String, SqlType> schema,
@@ -65,12 +132,6 @@ public class PostgresDao {
             throw new IllegalArgumentException("columns must contain keyColumn: " + keyColumn);
         }
 
-        String qTable = qIdent(tableName);
-        String qKey = qIdent(keyColumn);
-
-        String insertColsSql = join(columns, PostgresDao::qIdent, ", ");
-        String placeholders = join(columns, c -> "?", ", ");
-
         List<String> updCols = new ArrayList<>();
         for (String c : columns) {
             if (!c.equals(keyColumn)) updCols.add(c);
@@ -79,16 +140,41 @@ public class PostgresDao {
             throw new IllegalStateException("No updatable columns for table " + tableName);
         }
 
-        String updateSql = join(updCols, c -> qIdent(c) + " = EXCLUDED." + qIdent(c), ", ");
+        return switch (writeStrategy) {
+            case BATCH -> upsertJdbcBatch(tableName, keyColumn, schema, columns, updCols, rows);
+            case UNNEST -> upsertUnnest(tableName, keyColumn, schema, columns, updCols, rows);
+        };
+    }
+
+    private UpsertResult upsertJdbcBatch(
+            String tableName,
+            String keyColumn,
+            LinkedHashMap<String, SqlType> schema,
+            List<String> columns,
+            List<String> updCols,
+            List<Map<String, Object>> rows
+    ) throws Exception {
+
+        String qTable = qIdent(tableName);
+        String qKey = qIdent(keyColumn);
+
+        String insertColsSql = join(columns, PostgresDao::qIdent, ", ");
+        String placeholders = join(columns, c -> "?", ", ");
 
         String upsertSql =
-                "INSERT INTO " + qTable + " (" + insertColsSql + ")\n" +
+                "INSERT INTO " + qTable + " AS t (" + insertColsSql + ")\n" +
                         "VALUES (" + placeholders + ")\n" +
-                        "ON CONFLICT (" + qKey + ") DO UPDATE SET " + updateSql;
+                        onConflictSql(qKey, updCols);
+
+        String matchSql = matchSql(qTable, qKey);
+        SqlType keyType = schema.get(keyColumn);
 
         try (Connection c = connectionFactory.get(); PreparedStatement ps = c.prepareStatement(upsertSql)) {
             c.setAutoCommit(false);
             try {
+                UpsertResult total = new UpsertResult(0, 0, 0);
+                BatchChunk chunk = new BatchChunk();
+
                 for (Map<String, Object> row : rows) {
                     Object keyVal = row.get(keyColumn);
                     if (keyVal == null || String.valueOf(keyVal).trim().isEmpty()) {
@@ -100,13 +186,139 @@ public class PostgresDao {
                         SqlType type = schema.get(col);
                         Object raw = row.get(col);
                         bind(ps, i + 1, type, raw);
+                        if (chunk.traced && raw != null) chunk.bytes += String.valueOf(raw).length();
                     }
 
                     ps.addBatch();
+                    chunk.add(convert(keyType, keyVal), keyVal);
+                    if (chunk.count >= chunkRows) {
+                        total = total.plus(executeBatchChunk(c, ps, matchSql, tableName, chunk));
+                        chunk = new BatchChunk();
+                    }
+                }
+                if (chunk.count > 0) {
+                    total = total.plus(executeBatchChunk(c, ps, matchSql, tableName, chunk));
+                }
+
+                CommitEvent commit = new CommitEvent();
+                commit.begin();
+                c.commit();
+                commit.end();
+                if (commit.shouldCommit()) {
+                    commit.table = tableName;
+                    commit.rows = total.submitted();
+                    commit.commit();
+                }
+                return total;
+            } catch (Exception e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static UpsertResult executeBatchChunk(
+            Connection c,
+            PreparedStatement ps,
+            String matchSql,
+            String tableName,
+            BatchChunk chunk
+    ) throws SQLException {
+
+        BindEvent bindEvent = chunk.bindEvent;
+        bindEvent.end();
+        if (bindEvent.shouldCommit()) {
+            bindEvent.table = tableName;
+            bindEvent.rows = chunk.count;
+            bindEvent.bytes = chunk.bytes;
+            bindEvent.commit();
+        }
+
+        int existing = countExisting(c, matchSql, chunk.keys);
+        int inserted = chunk.keys.size() - existing;
+
+        BatchExecuteEvent batch = chunk.batchEvent;
+        batch.begin();
+        int written = sum(ps.executeBatch());
+        batch.end();
+
+        int updated = written == UpsertResult.UNKNOWN ? UpsertResult.UNKNOWN : written - inserted;
+        if (written != UpsertResult.UNKNOWN && updated < 0) {
+            throw new IllegalStateException("Table " + tableName + ": " + written + " rows written but " + inserted
+                    + " counted as new; was the table changed concurrently?");
+        }
+        UpsertResult result = new UpsertResult(chunk.count, chunk.count - inserted, updated);
+        if (batch.shouldCommit()) {
+            batch.table = tableName;
+            batch.rows = chunk.count;
+            batch.updated = result.updated();
+            batch.bytes = chunk.bytes;
+            batch.firstKey = String.valueOf(chunk.firstKey);
+            batch.lastKey = String.valueOf(chunk.lastKey);
+            batch.commit();
+        }
+        return result;
+    }
+
+    private UpsertResult upsertUnnest(
+            String tableName,
+            String keyColumn,
+            LinkedHashMap<String, SqlType> schema,
+            List<String> columns,
+            List<String> updCols,
+            List<Map<String, Object>> rows
+    ) throws Exception {
+
+        String qTable = qIdent(tableName);
+        String qKey = qIdent(keyColumn);
+
+        String insertColsSql = join(columns, PostgresDao::qIdent, ", ");
+        String arrayParams = join(columns, c -> "?", ", ");
+
+        String upsertSql =
+                "INSERT INTO " + qTable + " AS t (" + insertColsSql + ")\n" +
+                        "SELECT * FROM unnest(" + arrayParams + ")\n" +
+                        onConflictSql(qKey, updCols) + "\n" +
+                        "RETURNING (xmax = 0)";
+
+        SqlType keyType = schema.get(keyColumn);
+
+        try (Connection c = connectionFactory.get(); PreparedStatement ps = c.prepareStatement(upsertSql)) {
+            c.setAutoCommit(false);
+            try {
+                UpsertResult total = new UpsertResult(0, 0, 0);
+
+                // one statement may not touch the same key twice, so keep the last row per key
+                LinkedHashMap<Object, Map<String, Object>> chunk = new LinkedHashMap<>();
+                int duplicates = 0;
+                for (Map<String, Object> row : rows) {
+                    Object keyVal = convert(keyType, row.get(keyColumn));
+                    if (keyVal == null) continue;
+
+                    if (chunk.remove(keyVal) != null) duplicates++;
+                    chunk.put(keyVal, row);
+                    if (chunk.size() >= chunkRows) {
+                        total = total.plus(executeChunk(c, ps, tableName, schema, columns, chunk, duplicates));
+                        chunk.clear();
+                        duplicates = 0;
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    total = total.plus(executeChunk(c, ps, tableName, schema, columns, chunk, duplicates));
                 }
 
-                ps.executeBatch();
+                CommitEvent commit = new CommitEvent();
+                commit.begin();
                 c.commit();
+                commit.end();
+                if (commit.shouldCommit()) {
+                    commit.table = tableName;
+                    commit.rows = total.submitted();
+                    commit.commit();
+                }
+                return total;
             } catch (Exception e) {
                 c.rollback();
                 throw e;
@@ -116,6 +328,134 @@ public class PostgresDao {
         }
     }
 
+    private static UpsertResult executeChunk(
+            Connection c,
+            PreparedStatement ps,
+            String tableName,
+            LinkedHashMap<String, SqlType> schema,
+            List<String> columns,
+            LinkedHashMap<Object, Map<String, Object>> chunk,
+            int duplicates
+    ) throws SQLException {
+
+        BindEvent bindEvent = new BindEvent();
+        BatchExecuteEvent batch = new BatchExecuteEvent();
+        boolean traced = bindEvent.isEnabled() || batch.isEnabled();
+        long bytes = 0;
+
+        bindEvent.begin();
+        int n = chunk.size();
+        Object[][] values = new Object[columns.size()][n];
+        int r = 0;
+        for (Map<String, Object> row : chunk.values()) {
+            for (int i = 0; i < columns.size(); i++) {
+                Object raw = row.get(columns.get(i));
+                values[i][r] = convert(schema.get(columns.get(i)), raw);
+                if (traced && raw != null) bytes += String.valueOf(raw).length();
+            }
+            r++;
+        }
+
+        List<Array> arrays = new ArrayList<>(columns.size());
+        try {
+            for (int i = 0; i < columns.size(); i++) {
+                Array arr = c.createArrayOf(schema.get(columns.get(i)).ddl(), values[i]);
+                arrays.add(arr);
+                ps.setArray(i + 1, arr);
+            }
+            bindEvent.end();
+            if (bindEvent.shouldCommit()) {
+                bindEvent.table = tableName;
+                bindEvent.rows = n;
+                bindEvent.bytes = bytes;
+                bindEvent.commit();
+            }
+
+            // RETURNING only yields rows actually written; xmax = 0 marks a fresh insert
+            int inserted = 0;
+            int updated = 0;
+            batch.begin();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getBoolean(1)) inserted++;
+                    else updated++;
+                }
+            }
+            batch.end();
+
+            // rows dropped as duplicates count as submitted and matched, as they do on the batch path
+            UpsertResult result = new UpsertResult(n + duplicates, n - inserted + duplicates, updated);
+            if (batch.shouldCommit()) {
+                Object firstKey = chunk.keySet().iterator().next();
+                Object lastKey = null;
+                for (Object k : chunk.keySet()) lastKey = k;
+
+                batch.table = tableName;
+                batch.rows = n;
+                batch.updated = result.updated();
+                batch.bytes = bytes;
+                batch.firstKey = String.valueOf(firstKey);
+                batch.lastKey = String.valueOf(lastKey);
+                batch.commit();
+            }
+            return result;
+        } finally {
+            for (Array arr : arrays) arr.free();
+        }
+    }
+
+    private static String matchSql(String qTable, String qKey) {
+        return "SELECT count(*) FROM " + qTable + " WHERE " + qKey + " = ANY (?)";
+    }
+
+    private String onConflictSql(String qKey, List<String> updCols) {
+        String updateSql = join(updCols, c -> qIdent(c) + " = EXCLUDED." + qIdent(c), ", ");
+        String sql = "ON CONFLICT (" + qKey + ") DO UPDATE SET " + updateSql;
+        if (!skipUnchanged) return sql;
+
+        return sql + "\nWHERE (" + join(updCols, c -> "t." + qIdent(c), ", ") + ")"
+                + " IS DISTINCT FROM (" + join(updCols, c -> "EXCLUDED." + qIdent(c), ", ") + ")";
+    }
+
+    private static int countExisting(Connection c, String sql, Set<Object> keys) throws SQLException {
+        if (keys.isEmpty()) return 0;
+
+        // sent untyped so the server reads the literal as an array of the key column's own type;
+        // an array typed from the inferred schema fails as e.g. text = ANY (bigint[])
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setObject(1, arrayLiteral(keys), Types.OTHER);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static String arrayLiteral(Set<Object> values) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Object v : values) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append('"');
+            String s = String.valueOf(v);
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                if (ch == '"' || ch == '\\') sb.append('\\');
+                sb.append(ch);
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static int sum(int[] counts) {
+        int n = 0;
+        for (int c : counts) {
+            if (c == Statement.SUCCESS_NO_INFO) return UpsertResult.UNKNOWN;
+            if (c > 0) n += c;
+        }
+        return n;
+    }
+
     private static void requireValidIdent(String ident, String what) {
         if (ident == null || ident.isBlank()) {
             throw new IllegalArgumentException(what + " is blank");
@@ -131,26 +471,36 @@ public class PostgresDao {
     }
 
     private static void bind(PreparedStatement ps, int idx, SqlType type, Object raw) throws SQLException {
-        if (raw == null) {
-            ps.setNull(idx, type.jdbcType());
-            return;
-        }
-
-        String s = String.valueOf(raw).trim();
-        if (s.isEmpty()) {
+        Object v = convert(type, raw);
+        if (v == null) {
             ps.setNull(idx, type.jdbcType());
             return;
         }
 
         switch (type) {
-            case BIGINT -> ps.setLong(idx, Long.parseLong(s));
-            case INTEGER -> ps.setInt(idx, Integer.parseInt(s));
-            case DECIMAL -> ps.setBigDecimal(idx, new java.math.BigDecimal(s.replace(',', '.')));
-            case BOOLEAN -> ps.setBoolean(idx, parseBool(s));
-            case TEXT, VARCHAR -> ps.setString(idx, s);
+            case BIGINT -> ps.setLong(idx, (Long) v);
+            case INTEGER -> ps.setInt(idx, (Integer) v);
+            case DECIMAL -> ps.setBigDecimal(idx, (BigDecimal) v);
+            case BOOLEAN -> ps.setBoolean(idx, (Boolean) v);
+            case TEXT, VARCHAR -> ps.setString(idx, (String) v);
         }
     }
 
+    private static Object convert(SqlType type, Object raw) {
+        if (raw == null) return null;
+
+        String s = String.valueOf(raw).trim();
+        if (s.isEmpty()) return null;
+
+        return switch (type) {
+            case BIGINT -> Long.parseLong(s);
+            case INTEGER -> Integer.parseInt(s);
+            case DECIMAL -> new BigDecimal(s.replace(',', '.'));
+            case BOOLEAN -> parseBool(s);
+            case TEXT, VARCHAR -> s;
+        };
+    }
+
     private static String join(List<String> items, Function<String, String> mapper, String delim) {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < items.size(); i++) {
@@ -164,4 +514,26 @@ public class PostgresDao {
         String v = s.toLowerCase();
         return v.equals("1") || v.equals("true") || v.equals("yes") || v.equals("y");
     }
+
+    private static final class BatchChunk {
+        final BindEvent bindEvent = new BindEvent();
+        final BatchExecuteEvent batchEvent = new BatchExecuteEvent();
+        final boolean traced = bindEvent.isEnabled() || batchEvent.isEnabled();
+        final Set<Object> keys = new LinkedHashSet<>();
+        int count;
+        long bytes;
+        Object firstKey;
+        Object lastKey;
+
+        BatchChunk() {
+            bindEvent.begin();
+        }
+
+        void add(Object key, Object rawKey) {
+            keys.add(key);
+            if (firstKey == null) firstKey = rawKey;
+            lastKey = rawKey;
+            count++;
+        }
+    }
 }
\ No newline at end of file
@@ -25,5 +25,32 @@ public enum SqlType {
     public int jdbcType() {
         return jdbcType;
     }
+
+    public boolean canWidenTo(SqlType other) {
+        return rank() > 0 && other.rank() > rank();
+    }
+
+    public static SqlType fromDataType(String dataType) {
+        if (dataType == null) return null;
+        return switch (dataType) {
+            case "bigint" -> BIGINT;
+            case "integer" -> INTEGER;
+            case "numeric" -> DECIMAL;
+            case "boolean" -> BOOLEAN;
+            case "text" -> TEXT;
+            case "character varying", "varchar" -> VARCHAR;
+            default -> null;
+        };
+    }
+
+    private int rank() {
+        return switch (this) {
+            case INTEGER -> 1;
+            case BIGINT -> 2;
+            case DECIMAL -> 3;
+            case TEXT, VARCHAR -> 4;
+            case BOOLEAN -> 0;
+        };
+    }
 }
 
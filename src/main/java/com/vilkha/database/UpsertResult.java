@@ -0,0 +1,58 @@
+package com.vilkha.database;
+
+public final class UpsertResult {
+
+    public static final int UNKNOWN = -1;
+
+    private final int submitted;
+    private final int matched;
+    private final int updated;
+
+    public UpsertResult(int submitted, int matched, int updated) {
+        if (submitted < 0 || matched < 0 || matched > submitted) {
+            throw new IllegalArgumentException("Inconsistent counts: " + matched + " of " + submitted + " matched");
+        }
+        if (updated != UNKNOWN && (updated < 0 || updated > matched)) {
+            throw new IllegalArgumentException("Inconsistent counts: " + updated + " of " + matched + " updated");
+        }
+        this.submitted = submitted;
+        this.matched = matched;
+        this.updated = updated;
+    }
+
+    public int submitted() {
+        return submitted;
+    }
+
+    public int matched() {
+        return matched;
+    }
+
+    // UNKNOWN when the driver reported SUCCESS_NO_INFO, e.g. with reWriteBatchedInserts=true
+    public int updated() {
+        return updated;
+    }
+
+    public int inserted() {
+        return submitted - matched;
+    }
+
+    public int unchanged() {
+        return updated == UNKNOWN ? UNKNOWN : matched - updated;
+    }
+
+    public UpsertResult plus(UpsertResult other) {
+        int sum = updated == UNKNOWN || other.updated == UNKNOWN ? UNKNOWN : updated + other.updated;
+        return new UpsertResult(submitted + other.submitted, matched + other.matched, sum);
+    }
+
+    @Override
+    public String toString() {
+        if (updated == UNKNOWN) {
+            return submitted + " rows: " + inserted() + " inserted, " + matched
+                    + " matched (updated count unknown, driver reported SUCCESS_NO_INFO)";
+        }
+        return submitted + " rows: " + inserted() + " inserted, " + updated + " of " + matched
+                + " matched updated, " + unchanged() + " unchanged";
+    }
+}
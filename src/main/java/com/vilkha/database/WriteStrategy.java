@@ -0,0 +1,16 @@
+package com.vilkha.database;
+
+import java.util.Locale;
+
+public enum WriteStrategy {
+    BATCH,
+    UNNEST;
+
+    public static WriteStrategy parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown write strategy: " + value + ". Allowed: batch, unnest");
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.vilkha.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.vilkha.BatchExecute")
+@Label("Batch Execute")
+@Description("Execution of one upsert batch against PostgreSQL")
+@Category({"xml-to-postgres", "Database"})
+@StackTrace(false)
+public final class BatchExecuteEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Updated")
+    @Description("Rows whose existing version was actually rewritten, -1 when the driver reported no counts")
+    public int updated;
+
+    @Label("Bytes")
+    @Description("Approximate size of the bound values")
+    @DataAmount
+    public long bytes;
+
+    @Label("First Key")
+    public String firstKey;
+
+    @Label("Last Key")
+    public String lastKey;
+}
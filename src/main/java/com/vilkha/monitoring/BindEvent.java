@@ -0,0 +1,28 @@
+package com.vilkha.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.vilkha.Bind")
+@Label("Bind")
+@Description("Conversion and binding of row values before an upsert is executed")
+@Category({"xml-to-postgres", "Database"})
+@StackTrace(false)
+public final class BindEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Bytes")
+    @Description("Approximate size of the bound values")
+    @DataAmount
+    public long bytes;
+}
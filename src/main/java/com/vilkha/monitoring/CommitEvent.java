@@ -0,0 +1,22 @@
+package com.vilkha.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.vilkha.Commit")
+@Label("Commit")
+@Description("Commit of an upsert transaction")
+@Category({"xml-to-postgres", "Database"})
+@StackTrace(false)
+public final class CommitEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Rows")
+    public int rows;
+}
@@ -0,0 +1,24 @@
+package com.vilkha.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.vilkha.Fetch")
+@Label("Feed Fetch")
+@Description("Download and parse of the XML feed into per-table rows, on heap or into spill files")
+@Category({"xml-to-postgres", "Parser"})
+@StackTrace(false)
+public final class FetchEvent extends Event {
+
+    @Label("URL")
+    public String url;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
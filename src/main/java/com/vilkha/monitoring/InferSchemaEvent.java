@@ -0,0 +1,25 @@
+package com.vilkha.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.vilkha.InferSchema")
+@Label("Infer Schema")
+@Description("Column type inference over one table's rows; with spill files it runs row by row inside Parse Table")
+@Category({"xml-to-postgres", "Parser"})
+@StackTrace(false)
+public final class InferSchemaEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int columns;
+}
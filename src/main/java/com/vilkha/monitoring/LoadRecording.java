@@ -0,0 +1,44 @@
+package com.vilkha.monitoring;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+public final class LoadRecording implements AutoCloseable {
+
+    private final Recording recording;
+    private final Path destination;
+
+    private LoadRecording(Recording recording, Path destination) {
+        this.recording = recording;
+        this.destination = destination;
+    }
+
+    public static LoadRecording start(Path destination) throws Exception {
+        Objects.requireNonNull(destination);
+
+        Recording r = new Recording(Configuration.getConfiguration("profile"));
+        r.setName("xml-to-postgres");
+        r.enable(FetchEvent.class);
+        r.enable(ParseTableEvent.class);
+        r.enable(InferSchemaEvent.class);
+        r.enable(BindEvent.class);
+        r.enable(BatchExecuteEvent.class);
+        r.enable(CommitEvent.class);
+        r.setDestination(destination);
+        r.start();
+        return new LoadRecording(r, destination);
+    }
+
+    public Path destination() {
+        return destination;
+    }
+
+    @Override
+    public void close() {
+        recording.stop();
+        recording.close();
+    }
+}
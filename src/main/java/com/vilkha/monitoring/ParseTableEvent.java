@@ -0,0 +1,22 @@
+package com.vilkha.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.vilkha.ParseTable")
+@Label("Parse Table")
+@Description("Extraction of one table's rows from the feed, with spill files including type inference")
+@Category({"xml-to-postgres", "Parser"})
+@StackTrace(false)
+public final class ParseTableEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Rows")
+    public int rows;
+}
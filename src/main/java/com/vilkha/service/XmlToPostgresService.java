@@ -2,6 +2,9 @@ package com.vilkha.service;
 
 import com.vilkha.database.SqlType;
 import com.vilkha.database.PostgresDao;
+import com.vilkha.database.UpsertResult;
+import com.vilkha.xml.CacheStats;
+import com.vilkha.xml.CatalogSnapshot;
 import com.vilkha.xml.XmlCatalogParser;
 
 import java.util.ArrayList;
@@ -18,24 +21,43 @@ public final class XmlToPostgresService {
 
     private final XmlCatalogParser parser;
     private final PostgresDao dao;
+    private final boolean autoEvolve;
+    private final boolean widenTypes;
+    private final String lockTimeout;
+    private final String statementTimeout;
 
     private static final Pattern IDENT = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
 
     public XmlToPostgresService(XmlCatalogParser parser, PostgresDao dao) {
+        this(parser, dao, false, false, "2s", "60s");
+    }
+
+    public XmlToPostgresService(XmlCatalogParser parser, PostgresDao dao, boolean autoEvolve, boolean widenTypes,
+                                String lockTimeout, String statementTimeout) {
         this.parser = Objects.requireNonNull(parser);
         this.dao = Objects.requireNonNull(dao);
+        this.autoEvolve = autoEvolve;
+        this.widenTypes = widenTypes;
+        this.lockTimeout = Objects.requireNonNull(lockTimeout);
+        this.statementTimeout = Objects.requireNonNull(statementTimeout);
     }
 
     public List<String> getTableNames() {
         return new ArrayList<>(parser.getTableNames());
     }
 
+    public List<CacheStats> getCacheStats() {
+        return parser.getCacheStats();
+    }
+
     public String getTableDDL(String tableName) throws Exception {
         requireAllowedTable(tableName);
 
         String idCol = idColumn(tableName);
-        LinkedHashMap<String, SqlType> schema = parser.inferSchema(tableName, idCol);
+        return tableDDL(tableName, idCol, parser.inferSchema(tableName, idCol));
+    }
 
+    private static String tableDDL(String tableName, String idCol, LinkedHashMap<String, SqlType> schema) {
         for (String col : schema.keySet()) qIdent(col);
         if (idCol != null) qIdent(idCol);
 
@@ -60,27 +82,41 @@ public final class XmlToPostgresService {
         return sb.toString();
     }
 
-    public void update() throws Exception {
-        update("currency");
-        update("categories");
-        update("offers");
+    public LinkedHashMap<String, UpsertResult> update() throws Exception {
+        CatalogSnapshot snapshot = parser.snapshot();
+
+        LinkedHashMap<String, UpsertResult> results = new LinkedHashMap<>();
+        results.put("currency", update(snapshot, "currency"));
+        results.put("categories", update(snapshot, "categories"));
+        results.put("offers", update(snapshot, "offers"));
+        return results;
     }
 
-    public void update(String tableName) throws Exception {
+    public UpsertResult update(String tableName) throws Exception {
         requireAllowedTable(tableName);
+        return update(parser.snapshot(), tableName);
+    }
 
+    private UpsertResult update(CatalogSnapshot snapshot, String tableName) throws Exception {
         String idCol = idColumn(tableName);
-        LinkedHashMap<String, SqlType> xmlSchema = parser.inferSchema(tableName, idCol);
-
-        for (String col : xmlSchema.keySet()) qIdent(col);
-        if (idCol != null) qIdent(idCol);
-
-        dao.execute(getTableDDL(tableName));
+        LinkedHashMap<String, SqlType> xmlSchema = snapshot.schema(tableName, idCol);
+
+        dao.execute(tableDDL(tableName, idCol, xmlSchema));
+
+        if (autoEvolve) {
+            Map<String, String> dbTypes = dao.fetchColumnTypes(tableName);
+            List<String> changes = columnAdds(tableName, xmlSchema, dbTypes);
+            if (widenTypes) changes.addAll(typeWidenings(tableName, xmlSchema, dbTypes));
+            if (!changes.isEmpty()) dao.executeWithTimeouts(changes, lockTimeout, statementTimeout);
+            ensureColumnsPresent(tableName, xmlSchema);
+            if (!widenTypes) ensureTypesFit(tableName, xmlSchema);
+        } else {
+            ensureStructureNotChanged(tableName, xmlSchema);
+        }
 
-        ensureStructureNotChanged(tableName, xmlSchema);
+        LinkedHashMap<String, SqlType> loadSchema = alignToDb(xmlSchema, dao.fetchColumnTypes(tableName));
 
-        List<Map<String, Object>> rows = parser.readRows(tableName);
-        dao.upsertBatch(tableName, idCol, xmlSchema, rows);
+        return dao.upsertBatch(tableName, idCol, loadSchema, snapshot.rows(tableName));
     }
 
     public ArrayList<String> getColumnNames(String tableName) throws Exception {
@@ -110,25 +146,86 @@ public final class XmlToPostgresService {
 
         String idCol = idColumn(tableName);
         LinkedHashMap<String, SqlType> xmlSchema = parser.inferSchema(tableName, idCol);
-        Set<String> dbCols = dao.fetchColumns(tableName);
 
-        List<String> missing = new ArrayList<>();
-        for (String col : xmlSchema.keySet()) {
-            if (!dbCols.contains(col)) missing.add(col);
+        Map<String, String> dbTypes = dao.fetchColumnTypes(tableName);
+        List<String> adds = columnAdds(tableName, xmlSchema, dbTypes);
+        List<String> widenings = typeWidenings(tableName, xmlSchema, dbTypes);
+        if (adds.isEmpty() && widenings.isEmpty()) return "-- no changes\n";
+
+        StringBuilder sb = new StringBuilder();
+        for (String sql : adds) sb.append(sql).append(";\n");
+        for (String sql : widenings) {
+            if (!widenTypes) sb.append("-- rewrites the table, requires db.schema.widen.types=true\n-- ");
+            sb.append(sql).append(";\n");
+        }
+        return sb.toString();
+    }
+
+    // nullable ADD COLUMN without a default only touches the catalog, the table is not rewritten;
+    // IF NOT EXISTS lets a second loader that raced for the same column go on instead of failing
+    private static List<String> columnAdds(String tableName, LinkedHashMap<String, SqlType> xmlSchema,
+                                           Map<String, String> dbTypes) {
+        List<String> changes = new ArrayList<>();
+        for (Map.Entry<String, SqlType> e : xmlSchema.entrySet()) {
+            if (dbTypes.containsKey(e.getKey())) continue;
+            changes.add("ALTER TABLE " + qIdent(tableName) + " ADD COLUMN IF NOT EXISTS " + qIdent(e.getKey())
+                    + " " + e.getValue().ddl());
         }
+        return changes;
+    }
 
-        if (missing.isEmpty()) return "-- no changes\n";
+    // ALTER COLUMN TYPE rewrites the table and its indexes while holding ACCESS EXCLUSIVE
+    private static List<String> typeWidenings(String tableName, LinkedHashMap<String, SqlType> xmlSchema,
+                                              Map<String, String> dbTypes) {
+        List<String> changes = new ArrayList<>();
+        for (Map.Entry<String, SqlType> e : xmlSchema.entrySet()) {
+            SqlType dbType = SqlType.fromDataType(dbTypes.get(e.getKey()));
+            if (dbType == null || !dbType.canWidenTo(e.getValue())) continue;
+
+            String col = qIdent(e.getKey());
+            String type = e.getValue().ddl();
+            changes.add("ALTER TABLE " + qIdent(tableName) + " ALTER COLUMN " + col
+                    + " TYPE " + type + " USING " + col + "::" + type);
+        }
+        return changes;
+    }
 
-        for (String col : missing) qIdent(col);
+    private void ensureTypesFit(String tableName, LinkedHashMap<String, SqlType> xmlSchema) throws Exception {
+        Map<String, String> dbTypes = dao.fetchColumnTypes(tableName);
 
-        StringBuilder sb = new StringBuilder();
-        for (String col : missing) {
-            SqlType t = xmlSchema.get(col);
-            sb.append("ALTER TABLE ").append(qIdent(tableName))
-                    .append(" ADD COLUMN ").append(qIdent(col))
-                    .append(" ").append(t.ddl()).append(";\n");
+        Set<String> tooNarrow = new TreeSet<>();
+        for (Map.Entry<String, SqlType> e : xmlSchema.entrySet()) {
+            SqlType dbType = SqlType.fromDataType(dbTypes.get(e.getKey()));
+            if (dbType != null && dbType.canWidenTo(e.getValue())) {
+                tooNarrow.add(e.getKey() + " " + dbType.ddl() + " -> " + e.getValue().ddl());
+            }
         }
-        return sb.toString();
+        if (!tooNarrow.isEmpty()) {
+            throw new IllegalStateException(
+                    "Column types of table '" + tableName + "' are too narrow for the feed: " + tooNarrow
+                            + ". Widening rewrites the table; enable db.schema.widen.types to allow it");
+        }
+    }
+
+    private void ensureColumnsPresent(String tableName, LinkedHashMap<String, SqlType> xmlSchema)
+            throws Exception {
+
+        Set<String> missing = new TreeSet<>(xmlSchema.keySet());
+        missing.removeAll(dao.fetchColumns(tableName));
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException(
+                    "Columns still missing in table '" + tableName + "' after schema evolution: " + missing);
+        }
+    }
+
+    private static LinkedHashMap<String, SqlType> alignToDb(LinkedHashMap<String, SqlType> xmlSchema,
+                                                             Map<String, String> dbTypes) {
+        LinkedHashMap<String, SqlType> schema = new LinkedHashMap<>(xmlSchema);
+        for (Map.Entry<String, SqlType> e : schema.entrySet()) {
+            SqlType dbType = SqlType.fromDataType(dbTypes.get(e.getKey()));
+            if (dbType != null && e.getValue().canWidenTo(dbType)) e.setValue(dbType);
+        }
+        return schema;
     }
 
     private void ensureStructureNotChanged(String tableName, LinkedHashMap<String, SqlType> xmlSchema)
@@ -0,0 +1,64 @@
+package com.vilkha.xml;
+
+public final class CacheStats {
+
+    private final String name;
+    private final long hits;
+    private final long misses;
+    private final long refreshes;
+    private final long failedRefreshes;
+    private final long evictions;
+    private final int entries;
+    private final long weight;
+
+    CacheStats(String name, long hits, long misses, long refreshes, long failedRefreshes, long evictions,
+               int entries, long weight) {
+        this.name = name;
+        this.hits = hits;
+        this.misses = misses;
+        this.refreshes = refreshes;
+        this.failedRefreshes = failedRefreshes;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.weight = weight;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long refreshes() {
+        return refreshes;
+    }
+
+    public long failedRefreshes() {
+        return failedRefreshes;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    public int entries() {
+        return entries;
+    }
+
+    public long weight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": hits=" + hits + ", misses=" + misses + ", refreshes=" + refreshes
+                + ", failedRefreshes=" + failedRefreshes + ", evictions=" + evictions
+                + ", entries=" + entries + ", bytes=" + weight;
+    }
+}
@@ -0,0 +1,93 @@
+package com.vilkha.xml;
+
+import com.vilkha.database.SqlType;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Rows and column statistics of all tables extracted from one download of the feed, so a schema and
+ * the rows loaded against it always come from the same feed version.
+ */
+public final class CatalogSnapshot {
+
+    private final Map<String, List<Map<String, Object>>> rows;
+    private final Map<String, SchemaAccumulator> stats;
+    private volatile String etag;
+    private volatile String lastModified;
+    private final String catalogDate;
+
+    CatalogSnapshot(Map<String, List<Map<String, Object>>> rows, Map<String, SchemaAccumulator> stats,
+                    String etag, String lastModified, String catalogDate) {
+        this.rows = Objects.requireNonNull(rows);
+        this.stats = Objects.requireNonNull(stats);
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.catalogDate = catalogDate;
+    }
+
+    public List<Map<String, Object>> rows(String tableName) {
+        List<Map<String, Object>> tableRows = rows.get(tableName);
+        if (tableRows == null || tableRows.isEmpty()) {
+            throw new IllegalStateException("No rows found for table '" + tableName + "' in XML");
+        }
+        return tableRows;
+    }
+
+    public LinkedHashMap<String, SqlType> schema(String tableName, String idColumn) {
+        rows(tableName);
+        return stats.get(tableName).toSchema(idColumn);
+    }
+
+    public String catalogDate() {
+        return catalogDate;
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    String lastModified() {
+        return lastModified;
+    }
+
+    // same rows, newer validators: a 200 whose yml_catalog@date did not change
+    CatalogSnapshot revalidated(String etag, String lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        return this;
+    }
+
+    long estimateBytes() {
+        long bytes = 0;
+        for (List<Map<String, Object>> tableRows : rows.values()) {
+            if (tableRows instanceof SpilledRows) {
+                bytes += 8L * tableRows.size();
+                continue;
+            }
+            for (Map<String, Object> row : tableRows) {
+                bytes += 64;
+                for (Object v : row.values()) {
+                    bytes += 48;
+                    if (v != null) bytes += 40 + String.valueOf(v).length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    void discard() {
+        for (List<Map<String, Object>> tableRows : rows.values()) {
+            if (tableRows instanceof SpilledRows spilled) {
+                try {
+                    spilled.delete();
+                } catch (IOException ignored) {
+                    // a platform that refuses to delete a mapped file keeps it until the mapping is collected
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.vilkha.xml;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe LRU cache with a weight budget. Concurrent callers asking for the same key share a single
+ * load. After {@code refreshAfter} an entry is revalidated: its loader gets the previous value and may
+ * return that same instance when nothing changed; if revalidation fails the previous value is kept and
+ * served, and the next read tries again. Entries not read for {@code idle} are dropped by a background
+ * sweep.
+ */
+final class LoadingCache<K, V> {
+
+    @FunctionalInterface
+    interface Loader<V> {
+        V load(V previous) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Weigher<V> {
+        long weigh(V value);
+    }
+
+    @FunctionalInterface
+    interface RemovalListener<V> {
+        void removed(V value);
+    }
+
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "xml-cache-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String name;
+    private final long refreshNanos;
+    private final long idleNanos;
+    private final long maxWeight;
+    private final Weigher<V> weigher;
+    private final RemovalListener<V> removalListener;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long refreshes;
+    private long failedRefreshes;
+    private long evictions;
+
+    LoadingCache(String name, Duration refreshAfter, Duration idle, long maxWeight,
+                 Weigher<V> weigher, RemovalListener<V> removalListener) {
+        this(name, refreshAfter, idle, maxWeight, weigher, removalListener, System::nanoTime);
+        if (idleNanos > 0) Sweep.schedule(this, idleNanos);
+    }
+
+    LoadingCache(String name, Duration refreshAfter, Duration idle, long maxWeight,
+                 Weigher<V> weigher, RemovalListener<V> removalListener, LongSupplier clock) {
+        this.name = Objects.requireNonNull(name);
+        this.refreshNanos = refreshAfter == null ? 0 : refreshAfter.toNanos();
+        this.idleNanos = idle == null ? 0 : idle.toNanos();
+        this.maxWeight = maxWeight;
+        this.weigher = Objects.requireNonNull(weigher);
+        this.removalListener = removalListener;
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    V get(K key, Loader<V> loader) throws Exception {
+        Entry<V> e;
+        Entry<V> stale = null;
+        boolean owner = false;
+
+        synchronized (this) {
+            long now = clock.getAsLong();
+            e = entries.get(key);
+            if (e != null && e.loaded && refreshNanos > 0 && now - e.loadedAt > refreshNanos) {
+                stale = e;
+                e = null;
+            }
+            if (e == null) {
+                e = new Entry<>();
+                e.accessedAt = now;
+                entries.put(key, e);
+                if (stale == null) misses++;
+                owner = true;
+            } else {
+                e.accessedAt = now;
+                hits++;
+            }
+        }
+
+        if (owner) load(key, e, stale, loader);
+
+        try {
+            return e.value.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception x) throw x;
+            if (cause instanceof Error err) throw err;
+            throw ex;
+        }
+    }
+
+    synchronized void cleanUp() {
+        if (idleNanos <= 0) return;
+
+        long now = clock.getAsLong();
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<V> e = it.next().getValue();
+            if (!e.loaded || now - e.accessedAt <= idleNanos) continue;
+
+            it.remove();
+            weight -= e.weight;
+            evictions++;
+            notifyRemoved(e.value.getNow(null));
+        }
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(name, hits, misses, refreshes, failedRefreshes, evictions, entries.size(), weight);
+    }
+
+    private void load(K key, Entry<V> e, Entry<V> stale, Loader<V> loader) {
+        V previous = stale == null ? null : stale.value.getNow(null);
+
+        V value;
+        try {
+            value = loader.load(previous);
+        } catch (Throwable t) {
+            if (stale != null && t instanceof Exception) {
+                synchronized (this) {
+                    failedRefreshes++;
+                    stale.accessedAt = clock.getAsLong();
+                    if (entries.get(key) == e) {
+                        entries.put(key, stale);
+                    } else {
+                        weight -= stale.weight;
+                        notifyRemoved(previous);
+                    }
+                }
+                e.value.complete(previous);
+                return;
+            }
+            synchronized (this) {
+                if (entries.get(key) == e) entries.remove(key);
+            }
+            e.value.completeExceptionally(t);
+            return;
+        }
+
+        boolean unchanged = stale != null && value == previous;
+        long w = unchanged ? stale.weight : weigher.weigh(value);
+        synchronized (this) {
+            if (stale != null) {
+                weight -= stale.weight;
+                if (unchanged) refreshes++;
+                else notifyRemoved(previous);
+            }
+
+            e.weight = w;
+            e.loadedAt = clock.getAsLong();
+            e.accessedAt = e.loadedAt;
+            e.loaded = true;
+            if (entries.get(key) == e) {
+                if (maxWeight > 0 && w > maxWeight) {
+                    // larger than the whole budget: hand it to the waiting callers without keeping it
+                    entries.remove(key);
+                    evictions++;
+                    notifyRemoved(value);
+                } else {
+                    weight += w;
+                    evictOverBudget(key);
+                }
+            }
+        }
+        e.value.complete(value);
+    }
+
+    private void evictOverBudget(K keep) {
+        if (maxWeight <= 0) return;
+
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Map.Entry<K, Entry<V>> me = it.next();
+            Entry<V> e = me.getValue();
+            if (!e.loaded || me.getKey().equals(keep)) continue;
+
+            it.remove();
+            weight -= e.weight;
+            evictions++;
+            notifyRemoved(e.value.getNow(null));
+        }
+    }
+
+    private void notifyRemoved(V value) {
+        if (removalListener != null && value != null) removalListener.removed(value);
+    }
+
+    private static final class Entry<V> {
+        final CompletableFuture<V> value = new CompletableFuture<>();
+        long weight;
+        long loadedAt;
+        long accessedAt;
+        boolean loaded;
+    }
+
+    private static final class Sweep implements Runnable {
+        private final WeakReference<LoadingCache<?, ?>> cache;
+        private volatile ScheduledFuture<?> future;
+
+        private Sweep(LoadingCache<?, ?> cache) {
+            this.cache = new WeakReference<>(cache);
+        }
+
+        static void schedule(LoadingCache<?, ?> cache, long idleNanos) {
+            long period = Math.max(TimeUnit.SECONDS.toNanos(1), idleNanos / 2);
+            Sweep sweep = new Sweep(cache);
+            sweep.future = SWEEPER.scheduleWithFixedDelay(sweep, period, period, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            LoadingCache<?, ?> c = cache.get();
+            if (c != null) {
+                c.cleanUp();
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.vilkha.xml;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Appends parsed rows to a temporary file. Each record is a column count followed by
+ * (column index, value length, UTF-8 bytes) triples; a length of -1 encodes null.
+ */
+final class RowSpill implements Closeable {
+
+    private final Path file;
+    private final DataOutputStream out;
+
+    private final List<String> columns = new ArrayList<>();
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+
+    private long[] offsets = new long[1024];
+    private int size;
+    private long written;
+
+    RowSpill(Path file) throws IOException {
+        this.file = Objects.requireNonNull(file);
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    void append(Map<String, Object> row) throws IOException {
+        if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+        offsets[size++] = written;
+
+        out.writeInt(row.size());
+        written += 4;
+
+        for (Map.Entry<String, Object> e : row.entrySet()) {
+            out.writeInt(columnIndex(e.getKey()));
+            Object v = e.getValue();
+            if (v == null) {
+                out.writeInt(-1);
+                written += 8;
+            } else {
+                byte[] bytes = String.valueOf(v).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                written += 8 + bytes.length;
+            }
+        }
+    }
+
+    SpilledRows finish() throws IOException {
+        out.close();
+        return new SpilledRows(file, columns, Arrays.copyOf(offsets, size), written);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    void delete() throws IOException {
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private int columnIndex(String column) {
+        Integer idx = columnIndex.get(column);
+        if (idx == null) {
+            idx = columns.size();
+            columns.add(column);
+            columnIndex.put(column, idx);
+        }
+        return idx;
+    }
+}
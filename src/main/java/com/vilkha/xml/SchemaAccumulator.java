@@ -0,0 +1,66 @@
+package com.vilkha.xml;
+
+import com.vilkha.database.SqlType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+final class SchemaAccumulator {
+
+    private static final Pattern INT = Pattern.compile("-?\\d+");
+    private static final Pattern NUM = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    private final LinkedHashMap<String, ColumnGuess> columns = new LinkedHashMap<>();
+    private int rows;
+
+    void accept(Map<String, Object> row) {
+        rows++;
+        for (Map.Entry<String, Object> e : row.entrySet()) {
+            ColumnGuess guess = columns.computeIfAbsent(e.getKey(), k -> new ColumnGuess());
+            Object v = e.getValue();
+            if (v == null) continue;
+
+            String s = String.valueOf(v).trim();
+            if (!s.isEmpty()) guess.accept(s);
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int columns() {
+        return columns.size();
+    }
+
+    LinkedHashMap<String, SqlType> toSchema(String idColumn) {
+        LinkedHashMap<String, SqlType> schema = new LinkedHashMap<>();
+        for (Map.Entry<String, ColumnGuess> e : columns.entrySet()) {
+            schema.put(e.getKey(), e.getValue().type());
+        }
+        if (idColumn != null && !schema.containsKey(idColumn)) {
+            schema.put(idColumn, SqlType.TEXT);
+        }
+        return schema;
+    }
+
+    private static final class ColumnGuess {
+        private boolean seen;
+        private boolean allInt = true;
+        private boolean allNum = true;
+
+        void accept(String v) {
+            seen = true;
+            if (allInt && !INT.matcher(v).matches()) allInt = false;
+            if (allNum && !NUM.matcher(v).matches()) allNum = false;
+        }
+
+        SqlType type() {
+            if (!seen) return SqlType.TEXT;
+            if (allInt) return SqlType.BIGINT;
+            if (allNum) return SqlType.DECIMAL;
+            return SqlType.TEXT;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vilkha.xml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+final class SpilledRows extends AbstractList<Map<String, Object>> implements RandomAccess {
+
+    private static final long MAX_SEGMENT = Integer.MAX_VALUE;
+
+    private final Path file;
+    private final List<String> columns;
+    private final long[] offsets;
+    private final long[] segmentStarts;
+    private final MappedByteBuffer[] segments;
+
+    SpilledRows(Path file, List<String> columns, long[] offsets, long length) throws IOException {
+        this.file = file;
+        this.columns = List.copyOf(columns);
+        this.offsets = offsets;
+
+        List<Long> starts = new ArrayList<>();
+        List<Long> ends = new ArrayList<>();
+        long segStart = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            long end = i + 1 < offsets.length ? offsets[i + 1] : length;
+            if (end - segStart > MAX_SEGMENT) {
+                starts.add(segStart);
+                ends.add(offsets[i]);
+                segStart = offsets[i];
+            }
+        }
+        starts.add(segStart);
+        ends.add(length);
+
+        this.segmentStarts = new long[starts.size()];
+        this.segments = new MappedByteBuffer[starts.size()];
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < starts.size(); i++) {
+                segmentStarts[i] = starts.get(i);
+                segments[i] = ch.map(FileChannel.MapMode.READ_ONLY, starts.get(i), ends.get(i) - starts.get(i));
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        long offset = offsets[index];
+        int seg = Arrays.binarySearch(segmentStarts, offset);
+        if (seg < 0) seg = -seg - 2;
+
+        ByteBuffer buf = segments[seg].duplicate();
+        buf.position((int) (offset - segmentStarts[seg]));
+
+        int count = buf.getInt();
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String col = columns.get(buf.getInt());
+            int len = buf.getInt();
+            if (len < 0) {
+                row.put(col, null);
+            } else {
+                byte[] bytes = new byte[len];
+                buf.get(bytes);
+                row.put(col, new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return offsets.length;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -1,51 +1,188 @@
 package com.vilkha.xml;
 
 import com.vilkha.database.SqlType;
+import com.vilkha.monitoring.FetchEvent;
+import com.vilkha.monitoring.InferSchemaEvent;
+import com.vilkha.monitoring.ParseTableEvent;
 import groovy.xml.XmlSlurper;
 import groovy.xml.XmlUtil;
 import groovy.xml.slurpersupport.GPathResult;
 import org.codehaus.groovy.runtime.InvokerHelper;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 public class XmlCatalogParser {
 
-    private final String xmlUrl;
-    private GPathResult cachedDoc;
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60);
 
-    private final Map<String, List<Map<String, Object>>> cachedRows = new HashMap<>();
-    private final Map<String, LinkedHashMap<String, SqlType>> cachedSchema = new HashMap<>();
+    private final String xmlUrl;
+    private final Path spillDir;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
 
-    private static final Pattern INT = Pattern.compile("-?\\d+");
-    private static final Pattern NUM = Pattern.compile("-?\\d+(\\.\\d+)?");
+    private final LoadingCache<String, CatalogSnapshot> feedCache;
 
     public XmlCatalogParser(String xmlUrl) {
+        this(xmlUrl, null);
+    }
+
+    public XmlCatalogParser(String xmlUrl, Path spillDir) {
+        this(xmlUrl, spillDir, null, null, 0);
+    }
+
+    public XmlCatalogParser(String xmlUrl, Path spillDir, Duration refreshAfter, Duration idle, long maxCachedBytes) {
+        this(xmlUrl, spillDir, refreshAfter, idle, maxCachedBytes, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    public XmlCatalogParser(String xmlUrl, Path spillDir, Duration refreshAfter, Duration idle, long maxCachedBytes,
+                            Duration connectTimeout, Duration readTimeout) {
         this.xmlUrl = Objects.requireNonNull(xmlUrl);
+        this.spillDir = spillDir;
+        this.connectTimeout = Objects.requireNonNull(connectTimeout);
+        this.readTimeout = Objects.requireNonNull(readTimeout);
+
+        this.feedCache = new LoadingCache<>("feed", refreshAfter, idle, maxCachedBytes,
+                CatalogSnapshot::estimateBytes, CatalogSnapshot::discard);
     }
 
     public List<String> getTableNames() {
         return List.of("currency", "categories", "offers");
     }
 
+    public List<CacheStats> getCacheStats() {
+        return List.of(feedCache.stats());
+    }
+
+    public CatalogSnapshot snapshot() throws Exception {
+        return feedCache.get(xmlUrl, this::fetch);
+    }
+
     public List<Map<String, Object>> readRows(String tableName) throws Exception {
-        if (cachedRows.containsKey(tableName)) {
-            return cachedRows.get(tableName);
+        requireTable(tableName);
+        return snapshot().rows(tableName);
+    }
+
+    public LinkedHashMap<String, SqlType> inferSchema(String tableName, String idColumn) throws Exception {
+        requireTable(tableName);
+        return snapshot().schema(tableName, idColumn);
+    }
+
+    private void requireTable(String tableName) {
+        if (!getTableNames().contains(tableName)) {
+            throw new IllegalArgumentException("Unknown tableName: " + tableName);
         }
+    }
+
+    private CatalogSnapshot fetch(CatalogSnapshot previous) throws Exception {
+        FetchEvent event = new FetchEvent();
+        event.begin();
 
-        GPathResult doc = xmlDoc();
-        GPathResult shop = (GPathResult) doc.getProperty("shop");
+        URLConnection conn = connect(previous);
+        if (previous != null && conn instanceof HttpURLConnection http
+                && http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            http.disconnect();
+            commitFetch(event, 0);
+            return previous;
+        }
+
+        String etag = conn.getHeaderField("ETag");
+        String lastModified = conn.getHeaderField("Last-Modified");
+
+        CatalogSnapshot snapshot;
+        long bytes;
+        try (CountingInputStream is = new CountingInputStream(open(conn))) {
+            snapshot = spillDir != null
+                    ? spillFeed(is, previous, etag, lastModified)
+                    : domFeed(is, previous, etag, lastModified);
+            bytes = is.count;
+        }
+
+        commitFetch(event, bytes);
+        return snapshot;
+    }
+
+    private void commitFetch(FetchEvent event, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.url = xmlUrl;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private CatalogSnapshot domFeed(InputStream is, CatalogSnapshot previous, String etag, String lastModified)
+            throws Exception {
+
+        byte[] bytes = is.readAllBytes();
+
+        String catalogDate = catalogDate(new ByteArrayInputStream(bytes));
+        if (unchanged(previous, catalogDate)) return previous.revalidated(etag, lastModified);
+
+        String xml = new String(bytes, StandardCharsets.UTF_8);
+        xml = xml.replaceFirst("(?is)<!DOCTYPE.*?>", "");
+
+        XmlSlurper slurper = new XmlSlurper(false, false);
+        GPathResult shop = (GPathResult) slurper.parseText(xml).getProperty("shop");
+
+        // the DOM is dropped once every table has been extracted; only rows and statistics are cached
+        Map<String, List<Map<String, Object>>> rows = new HashMap<>();
+        Map<String, SchemaAccumulator> stats = new HashMap<>();
+        for (String table : getTableNames()) {
+            List<Map<String, Object>> tableRows = parseRows(shop, table);
+            rows.put(table, tableRows);
+            stats.put(table, accumulate(table, tableRows));
+        }
+
+        return new CatalogSnapshot(rows, stats, etag, lastModified, catalogDate);
+    }
+
+    private static SchemaAccumulator accumulate(String tableName, List<Map<String, Object>> rows) {
+        InferSchemaEvent event = new InferSchemaEvent();
+        event.begin();
+
+        SchemaAccumulator acc = new SchemaAccumulator();
+        for (Map<String, Object> row : rows) acc.accept(row);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = tableName;
+            event.rows = rows.size();
+            event.columns = acc.columns();
+            event.commit();
+        }
+        return acc;
+    }
+
+    private List<Map<String, Object>> parseRows(GPathResult shop, String tableName) {
+        ParseTableEvent event = new ParseTableEvent();
+        event.begin();
 
         List<Map<String, Object>> rows = new ArrayList<>();
 
@@ -77,58 +214,258 @@ public class XmlCatalogParser {
             default -> throw new IllegalArgumentException("Unknown tableName: " + tableName);
         }
 
-        if (rows.isEmpty()) {
-            throw new IllegalStateException("No rows found for table '" + tableName + "' in XML");
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = tableName;
+            event.rows = rows.size();
+            event.commit();
         }
 
-        cachedRows.put(tableName, rows);
         return rows;
     }
 
-    public LinkedHashMap<String, SqlType> inferSchema(String tableName, String idColumn) throws Exception {
-        if (cachedSchema.containsKey(tableName)){
-            return cachedSchema.get(tableName);
-        }
+    private CatalogSnapshot spillFeed(InputStream is, CatalogSnapshot previous, String etag, String lastModified)
+            throws Exception {
+
+        Map<String, RowSpill> spills = new LinkedHashMap<>();
+        Map<String, SchemaAccumulator> stats = new HashMap<>();
+        String catalogDate = null;
+
+        try {
+            XMLStreamReader r = inputFactory().createXMLStreamReader(is);
+            Deque<String> path = new ArrayDeque<>();
+            ParseTableEvent parse = null;
+            int parsedRows = 0;
+
+            while (r.hasNext()) {
+                int ev = r.next();
+                if (ev == XMLStreamConstants.START_ELEMENT) {
+                    if (path.isEmpty()) {
+                        catalogDate = r.getAttributeValue(null, "date");
+                        if (unchanged(previous, catalogDate)) {
+                            r.close();
+                            return previous.revalidated(etag, lastModified);
+                        }
+                    }
 
-        List<Map<String, Object>> rows = readRows(tableName);
+                    String table = tableOf(path, r.getLocalName());
+                    if (table == null) {
+                        path.push(r.getLocalName());
+                        continue;
+                    }
 
-        LinkedHashSet<String> cols = new LinkedHashSet<>();
-        for (Map<String, Object> row : rows) cols.addAll(row.keySet());
-        if (idColumn != null) cols.add(idColumn);
+                    if (parse == null) {
+                        parse = new ParseTableEvent();
+                        parse.begin();
+                        parsedRows = 0;
+                    }
 
-        LinkedHashMap<String, SqlType> schema = new LinkedHashMap<>();
-        for (String c : cols) {
-            List<String> values = new ArrayList<>();
-            for (Map<String, Object> row : rows) {
-                Object v = row.get(c);
-                if (v != null) {
-                    String s = String.valueOf(v).trim();
-                    if (!s.isEmpty()) values.add(s);
+                    Map<String, Object> row = streamToRow(r, "categories".equals(table));
+                    parsedRows++;
+                    RowSpill spill = spills.get(table);
+                    if (spill == null) {
+                        spill = newSpill(table);
+                        spills.put(table, spill);
+                    }
+                    spill.append(row);
+                    stats.computeIfAbsent(table, t -> new SchemaAccumulator()).accept(row);
+                } else if (ev == XMLStreamConstants.END_ELEMENT) {
+                    if (parse != null && path.size() == 3) {
+                        parse.end();
+                        if (parse.shouldCommit()) {
+                            parse.table = tableOfSection(path.peek());
+                            parse.rows = parsedRows;
+                            parse.commit();
+                        }
+                        parse = null;
+                    }
+                    path.pop();
                 }
             }
-            schema.put(c, guessType(values));
+            r.close();
+            Map<String, List<Map<String, Object>>> rows = new HashMap<>();
+            for (Map.Entry<String, RowSpill> e : spills.entrySet()) {
+                rows.put(e.getKey(), e.getValue().finish());
+            }
+            return new CatalogSnapshot(rows, stats, etag, lastModified, catalogDate);
+        } catch (Exception e) {
+            // a failed or truncated download must not leave full-size spill files behind
+            for (RowSpill spill : spills.values()) {
+                try {
+                    spill.delete();
+                } catch (IOException x) {
+                    e.addSuppressed(x);
+                }
+            }
+            throw e;
         }
+    }
 
-        cachedSchema.put(tableName, schema);
-        return schema;
+    private RowSpill newSpill(String table) throws IOException {
+        Path file = Files.createTempFile(spillDir, "xml2pg-" + table + "-", ".spill");
+        try {
+            return new RowSpill(file);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
     }
 
-    private GPathResult xmlDoc() throws Exception {
-        if (cachedDoc != null) return cachedDoc;
+    private URLConnection connect(CatalogSnapshot previous) throws IOException {
+        URLConnection conn = URI.create(xmlUrl).toURL().openConnection();
+        conn.setConnectTimeout((int) connectTimeout.toMillis());
+        conn.setReadTimeout((int) readTimeout.toMillis());
+        if (conn instanceof HttpURLConnection) {
+            conn.setRequestProperty("Accept-Encoding", "gzip");
+            if (previous != null && previous.etag() != null) {
+                conn.setRequestProperty("If-None-Match", previous.etag());
+            }
+            if (previous != null && previous.lastModified() != null) {
+                conn.setRequestProperty("If-Modified-Since", previous.lastModified());
+            }
+        }
+        return conn;
+    }
+
+    private static InputStream open(URLConnection conn) throws IOException {
+        InputStream is = conn.getInputStream();
+        if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+            return new GZIPInputStream(is, 1 << 16);
+        }
+        return is;
+    }
 
-        URL url = URI.create(xmlUrl).toURL();
+    // yml_catalog@date changes with every export, so an equal date means the feed was not rebuilt
+    private static boolean unchanged(CatalogSnapshot previous, String catalogDate) {
+        return previous != null && catalogDate != null && catalogDate.equals(previous.catalogDate());
+    }
 
-        String xml;
-        try (InputStream is = url.openStream()) {
-            xml = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+    private static String catalogDate(InputStream is) throws Exception {
+        XMLStreamReader r = inputFactory().createXMLStreamReader(is);
+        try {
+            while (r.hasNext()) {
+                if (r.next() == XMLStreamConstants.START_ELEMENT) return r.getAttributeValue(null, "date");
+            }
+            return null;
+        } finally {
+            r.close();
         }
+    }
 
-        xml = xml.replaceFirst("(?is)<!DOCTYPE.*?>", "");
+    private static XMLInputFactory inputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
 
-        XmlSlurper slurper = new XmlSlurper(false, false);
-        cachedDoc = (GPathResult) slurper.parseText(xml);
+    private static String tableOfSection(String section) {
+        return "currencies".equals(section) ? "currency" : section;
+    }
+
+    private static String tableOf(Deque<String> path, String element) {
+        if (path.size() != 3) return null;
+
+        List<String> p = new ArrayList<>(path);
+        if (!"shop".equals(p.get(1))) return null;
+
+        String parent = p.get(0);
+        if ("currencies".equals(parent) && "currency".equals(element)) return "currency";
+        if ("categories".equals(parent) && "category".equals(element)) return "categories";
+        if ("offers".equals(parent) && "offer".equals(element)) return "offers";
+        return null;
+    }
+
+    private static Map<String, Object> streamToRow(XMLStreamReader r, boolean textAsValue) throws Exception {
+        Map<String, Object> row = new LinkedHashMap<>(attributes(r));
+
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int ev = r.next();
+            if (ev == XMLStreamConstants.START_ELEMENT) {
+                String name = r.getLocalName();
+                row.put(name, streamChildValue(r));
+            } else if (ev == XMLStreamConstants.CHARACTERS || ev == XMLStreamConstants.CDATA) {
+                if (textAsValue) text.append(r.getText());
+            } else if (ev == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+
+        String value = text.toString().trim();
+        if (!value.isEmpty() && !row.containsKey("value")) {
+            row.put("value", value);
+        }
+        return row;
+    }
+
+    private static String streamChildValue(XMLStreamReader r) throws Exception {
+        String name = r.getLocalName();
+        Map<String, String> attrs = attributes(r);
+
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int ev = r.next();
+            if (ev == XMLStreamConstants.CHARACTERS || ev == XMLStreamConstants.CDATA) {
+                text.append(r.getText());
+            } else if (ev == XMLStreamConstants.END_ELEMENT) {
+                String s = text.toString().trim();
+                return s.isEmpty() ? null : s;
+            } else if (ev == XMLStreamConstants.START_ELEMENT) {
+                return serializeNested(r, name, attrs, text);
+            }
+        }
+    }
+
+    private static String serializeNested(XMLStreamReader r, String name, Map<String, String> attrs,
+                                          CharSequence leadingText) throws Exception {
+        StringWriter sw = new StringWriter();
+        XMLStreamWriter w = XMLOutputFactory.newInstance().createXMLStreamWriter(sw);
+
+        w.writeStartElement(name);
+        for (Map.Entry<String, String> a : attrs.entrySet()) w.writeAttribute(a.getKey(), a.getValue());
+        if (!leadingText.toString().isBlank()) w.writeCharacters(leadingText.toString());
+
+        int depth = 1;
+        int ev = XMLStreamConstants.START_ELEMENT;
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            if (ev == XMLStreamConstants.CHARACTERS || ev == XMLStreamConstants.CDATA) {
+                text.append(r.getText());
+            } else if (ev == XMLStreamConstants.START_ELEMENT || ev == XMLStreamConstants.END_ELEMENT) {
+                writeText(w, text);
+                if (ev == XMLStreamConstants.START_ELEMENT) {
+                    w.writeStartElement(r.getLocalName());
+                    for (Map.Entry<String, String> a : attributes(r).entrySet()) {
+                        w.writeAttribute(a.getKey(), a.getValue());
+                    }
+                    depth++;
+                } else {
+                    w.writeEndElement();
+                    if (--depth == 0) break;
+                }
+            }
+            ev = r.next();
+        }
 
-        return cachedDoc;
+        w.close();
+        return XmlUtil.serialize(sw.toString()).trim();
+    }
+
+    // XmlSlurper drops whitespace-only text nodes; skipping them here keeps both paths byte-identical
+    private static void writeText(XMLStreamWriter w, StringBuilder text) throws Exception {
+        if (!text.toString().isBlank()) w.writeCharacters(text.toString());
+        text.setLength(0);
+    }
+
+    // XmlSlurper fills a HashMap from the last attribute to the first; same order here keeps the paths identical
+    private static Map<String, String> attributes(XMLStreamReader r) {
+        Map<String, String> attrs = new HashMap<>();
+        for (int i = r.getAttributeCount() - 1; i >= 0; i--) {
+            attrs.put(r.getAttributeLocalName(i), r.getAttributeValue(i));
+        }
+        return attrs;
     }
 
     private Map<String, Object> nodeToRow(GPathResult node) {
@@ -174,25 +511,30 @@ public class XmlCatalogParser {
         return n;
     }
 
-    private SqlType guessType(List<String> values) {
-        if (values == null || values.isEmpty()) return SqlType.TEXT;
+    private static String safeTrim(String s) {
+        return s == null ? "" : s.trim();
+    }
 
-        boolean allInt = true;
-        boolean allNum = true;
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
 
-        for (String v : values) {
-            if (!INT.matcher(v).matches()) allInt = false;
-            if (!NUM.matcher(v).matches()) allNum = false;
-            if (!allInt && !allNum) break;
+        CountingInputStream(InputStream in) {
+            super(in);
         }
 
-        if (allInt) return SqlType.BIGINT;
-        if (allNum) return SqlType.DECIMAL;
-        return SqlType.TEXT;
-    }
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
 
-    private static String safeTrim(String s) {
-        return s == null ? "" : s.trim();
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
     }
 }
 
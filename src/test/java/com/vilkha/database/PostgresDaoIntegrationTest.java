@@ -0,0 +1,179 @@
+package com.vilkha.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs both write strategies against a real server. Skipped unless XML2PG_TEST_DB_URL points at a
+ * scratch database (XML2PG_TEST_DB_USER and XML2PG_TEST_DB_PASS default to postgres and empty); each
+ * test creates and drops its own table.
+ */
+class PostgresDaoIntegrationTest {
+
+    private DbConfig cfg;
+    private String table;
+
+    @BeforeEach
+    void connect() {
+        String url = System.getenv("XML2PG_TEST_DB_URL");
+        assumeTrue(url != null && !url.isBlank(), "XML2PG_TEST_DB_URL not set");
+        cfg = new DbConfig(url, env("XML2PG_TEST_DB_USER", "postgres"), env("XML2PG_TEST_DB_PASS", ""));
+        table = "it_" + Long.toHexString(System.nanoTime());
+    }
+
+    @AfterEach
+    void dropTable() throws Exception {
+        if (cfg != null) dao(WriteStrategy.BATCH, true, 10).execute("DROP TABLE IF EXISTS \"" + table + "\"");
+    }
+
+    @ParameterizedTest
+    @EnumSource(WriteStrategy.class)
+    void countsInsertsUpdatesAndUnchangedRows(WriteStrategy strategy) throws Exception {
+        createTable("bigint");
+        // two rows per chunk, so counts are summed over several statements
+        PostgresDao dao = dao(strategy, true, 2);
+
+        UpsertResult first = dao.upsertBatch(table, "id", schema(), List.of(
+                row("1", "a", "1.50", "true"), row("2", "b", null, "false"), row("3", "c", "3", null)));
+        assertCounts(3, 0, 0, first);
+
+        UpsertResult second = dao.upsertBatch(table, "id", schema(), List.of(
+                row("1", "a", "1.50", "true"), row("2", "b2", null, "false"), row("4", "d", "4,25", "yes")));
+        assertCounts(3, 2, 1, second);
+
+        Map<Long, String> names = names();
+        assertEquals(Map.of(1L, "a", 2L, "b2", 3L, "c", 4L, "d"), names);
+        assertEquals("4.25", scalar("SELECT price::text FROM \"" + table + "\" WHERE id = 4"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(WriteStrategy.class)
+    void duplicateKeysWithinChunkKeepLastRow(WriteStrategy strategy) throws Exception {
+        createTable("bigint");
+        PostgresDao dao = dao(strategy, true, 10);
+
+        UpsertResult r = dao.upsertBatch(table, "id", schema(), List.of(
+                row("1", "a", null, null), row("2", "b", null, null), row("1", "c", null, null)));
+
+        assertEquals(3, r.submitted());
+        assertEquals(1, r.matched());
+        // the batch path writes key 1 twice; UNNEST folds it into one inserted row
+        assertEquals(strategy == WriteStrategy.BATCH ? 1 : 0, r.updated());
+        assertEquals(Map.of(1L, "c", 2L, "b"), names());
+
+        UpsertResult same = dao.upsertBatch(table, "id", schema(), List.of(
+                row("1", "c", null, null), row("1", "c", null, null)));
+        assertCounts(2, 2, 0, same);
+    }
+
+    @ParameterizedTest
+    @EnumSource(WriteStrategy.class)
+    void unchangedRowsAreNotRewritten(WriteStrategy strategy) throws Exception {
+        createTable("bigint");
+        List<Map<String, Object>> rows = List.of(row("1", "a", "1", "true"), row("2", "b", null, null));
+        dao(strategy, true, 10).upsertBatch(table, "id", schema(), rows);
+        String versions = rowVersions();
+
+        UpsertResult skipped = dao(strategy, true, 10).upsertBatch(table, "id", schema(), rows);
+        assertCounts(2, 2, 0, skipped);
+        assertEquals(versions, rowVersions());
+
+        UpsertResult rewritten = dao(strategy, false, 10).upsertBatch(table, "id", schema(), rows);
+        assertCounts(2, 2, 2, rewritten);
+        assertNotEquals(versions, rowVersions());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WriteStrategy.class)
+    void textKeyColumnAcceptsNumericSchema(WriteStrategy strategy) throws Exception {
+        // an older table keeps a text key while the feed now infers bigint
+        createTable("text");
+        PostgresDao dao = dao(strategy, true, 10);
+
+        dao.upsertBatch(table, "id", schema(), List.of(row("1", "a", null, null)));
+        UpsertResult r = dao.upsertBatch(table, "id", schema(), List.of(
+                row("1", "a2", null, null), row("2", "b", null, null)));
+
+        assertCounts(2, 1, 1, r);
+    }
+
+    private static void assertCounts(int submitted, int matched, int updated, UpsertResult r) {
+        assertEquals(submitted, r.submitted(), "submitted");
+        assertEquals(matched, r.matched(), "matched");
+        assertEquals(updated, r.updated(), "updated");
+    }
+
+    private PostgresDao dao(WriteStrategy strategy, boolean skipUnchanged, int chunkRows) {
+        return new PostgresDao(new JdbcConnectionFactory(cfg), skipUnchanged, strategy, chunkRows);
+    }
+
+    private void createTable(String keyType) throws Exception {
+        dao(WriteStrategy.BATCH, true, 10).execute("CREATE TABLE \"" + table + "\" ("
+                + "id " + keyType + " PRIMARY KEY, name text, price numeric, available boolean)");
+    }
+
+    private static LinkedHashMap<String, SqlType> schema() {
+        LinkedHashMap<String, SqlType> schema = new LinkedHashMap<>();
+        schema.put("id", SqlType.BIGINT);
+        schema.put("name", SqlType.TEXT);
+        schema.put("price", SqlType.DECIMAL);
+        schema.put("available", SqlType.BOOLEAN);
+        return schema;
+    }
+
+    private static Map<String, Object> row(String id, String name, String price, String available) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+        row.put("price", price);
+        row.put("available", available);
+        return row;
+    }
+
+    private Map<Long, String> names() throws Exception {
+        Map<Long, String> names = new HashMap<>();
+        try (Connection c = new JdbcConnectionFactory(cfg).get(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id::bigint, name FROM \"" + table + "\"")) {
+            while (rs.next()) names.put(rs.getLong(1), rs.getString(2));
+        }
+        return names;
+    }
+
+    // xmin changes whenever a row is rewritten, even with identical values
+    private String rowVersions() throws Exception {
+        List<String> versions = new ArrayList<>();
+        try (Connection c = new JdbcConnectionFactory(cfg).get(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, xmin::text FROM \"" + table + "\" ORDER BY id")) {
+            while (rs.next()) versions.add(rs.getString(1) + "@" + rs.getString(2));
+        }
+        return versions.toString();
+    }
+
+    private String scalar(String sql) throws Exception {
+        try (Connection c = new JdbcConnectionFactory(cfg).get(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String v = System.getenv(name);
+        return v == null ? defaultValue : v;
+    }
+}
@@ -0,0 +1,35 @@
+package com.vilkha.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UpsertResultTest {
+
+    @Test
+    void countsAddUp() {
+        UpsertResult r = new UpsertResult(10, 4, 3).plus(new UpsertResult(5, 2, 1));
+
+        assertEquals(15, r.submitted());
+        assertEquals(9, r.inserted());
+        assertEquals(4, r.updated());
+        assertEquals(2, r.unchanged());
+    }
+
+    @Test
+    void unknownUpdateCountStaysUnknown() {
+        UpsertResult r = new UpsertResult(10, 4, 3).plus(new UpsertResult(5, 2, UpsertResult.UNKNOWN));
+
+        assertEquals(6, r.matched());
+        assertEquals(UpsertResult.UNKNOWN, r.updated());
+        assertEquals(UpsertResult.UNKNOWN, r.unchanged());
+    }
+
+    @Test
+    void inconsistentCountsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new UpsertResult(5, 2, -3));
+        assertThrows(IllegalArgumentException.class, () -> new UpsertResult(5, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> new UpsertResult(5, 6, 0));
+    }
+}
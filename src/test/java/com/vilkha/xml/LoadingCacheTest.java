@@ -0,0 +1,173 @@
+package com.vilkha.xml;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadingCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<String> removed = new ArrayList<>();
+
+    private LoadingCache<String, String> cache(Duration refreshAfter, Duration idle, long maxWeight) {
+        return new LoadingCache<>("test", refreshAfter, idle, maxWeight, String::length, removed::add, clock::get);
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        LoadingCache<String, String> cache = cache(null, null, 0);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.get("feed", previous -> {
+                    loads.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return "v1";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> f : results) assertEquals("v1", f.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().misses());
+        assertEquals(7, cache.stats().hits());
+    }
+
+    @Test
+    void failedLoadIsNotCached() throws Exception {
+        LoadingCache<String, String> cache = cache(null, null, 0);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("feed", previous -> {
+            throw new IllegalStateException("down");
+        }));
+
+        assertEquals("v1", cache.get("feed", previous -> "v1"));
+        assertEquals(1, cache.stats().entries());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverBudget() throws Exception {
+        LoadingCache<String, String> cache = cache(null, null, 10);
+        cache.get("a", previous -> "aaaaa");
+        cache.get("b", previous -> "bbbbb");
+        cache.get("a", previous -> "unused");
+
+        cache.get("c", previous -> "ccccc");
+
+        assertEquals(List.of("bbbbb"), removed);
+        assertEquals(2, cache.stats().entries());
+        assertEquals(10, cache.stats().weight());
+        assertEquals("aaaaa", cache.get("a", previous -> "reloaded"));
+    }
+
+    @Test
+    void valueLargerThanBudgetIsReturnedButNotKept() throws Exception {
+        LoadingCache<String, String> cache = cache(null, null, 4);
+
+        assertEquals("too large", cache.get("a", previous -> "too large"));
+
+        assertEquals(0, cache.stats().entries());
+        assertEquals(0, cache.stats().weight());
+        assertEquals(List.of("too large"), removed);
+    }
+
+    @Test
+    void refreshPassesPreviousValueAndKeepsItWhenUnchanged() throws Exception {
+        LoadingCache<String, String> cache = cache(Duration.ofSeconds(10), null, 0);
+        cache.get("feed", previous -> "v1");
+
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertEquals("v1", cache.get("feed", previous -> "not refreshed yet"));
+
+        clock.addAndGet(Duration.ofSeconds(6).toNanos());
+        List<String> seen = new ArrayList<>();
+        String same = cache.get("feed", previous -> {
+            seen.add(previous);
+            return previous;
+        });
+
+        assertEquals("v1", same);
+        assertEquals(List.of("v1"), seen);
+        assertEquals(1, cache.stats().refreshes());
+        assertTrue(removed.isEmpty());
+
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertEquals("v2", cache.get("feed", previous -> "v2"));
+        assertEquals(List.of("v1"), removed);
+        assertEquals(2, cache.stats().weight());
+    }
+
+    @Test
+    void failedRefreshKeepsServingPreviousValue() throws Exception {
+        LoadingCache<String, String> cache = cache(Duration.ofSeconds(10), null, 0);
+        cache.get("feed", previous -> "v1");
+
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+        String value = cache.get("feed", previous -> {
+            throw new java.io.IOException("503");
+        });
+
+        assertEquals("v1", value);
+        assertEquals(1, cache.stats().failedRefreshes());
+        assertEquals(1, cache.stats().entries());
+        assertEquals(2, cache.stats().weight());
+        assertTrue(removed.isEmpty());
+
+        List<String> seen = new ArrayList<>();
+        assertEquals("v2", cache.get("feed", previous -> {
+            seen.add(previous);
+            return "v2";
+        }));
+        assertEquals(List.of("v1"), seen);
+        assertEquals(List.of("v1"), removed);
+    }
+
+    @Test
+    void idleEntriesAreDroppedOnCleanUp() throws Exception {
+        LoadingCache<String, String> cache = cache(null, Duration.ofSeconds(60), 0);
+        cache.get("a", previous -> "a");
+        cache.get("b", previous -> "b");
+
+        clock.addAndGet(Duration.ofSeconds(40).toNanos());
+        cache.get("a", previous -> "unused");
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        cache.cleanUp();
+
+        assertEquals(List.of("b"), removed);
+        assertEquals(1, cache.stats().entries());
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void sameInstanceIsReturnedWhileFresh() throws Exception {
+        LoadingCache<String, Object> cache = new LoadingCache<>("test", Duration.ofSeconds(10), null, 0,
+                v -> 1, null, clock::get);
+        Object value = new Object();
+        cache.get("feed", previous -> value);
+
+        assertSame(value, cache.get("feed", previous -> new Object()));
+    }
+}
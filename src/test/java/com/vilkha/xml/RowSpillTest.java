@@ -0,0 +1,69 @@
+package com.vilkha.xml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowSpillTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rowsRoundTrip() throws Exception {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(row("id", "1", "name", "\u041a\u043e\u0444\u0435 \u2615 \ud83d\ude00", "price", "10.5"));
+        rows.add(row("id", "2", "name", null, "url", ""));
+        rows.add(row("price", "7", "id", "3", "params", "<params><param name=\"a\">x</param></params>"));
+        rows.add(row());
+
+        SpilledRows spilled = spill(rows);
+
+        assertEquals(rows.size(), spilled.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(new ArrayList<>(rows.get(i).entrySet()), new ArrayList<>(spilled.get(i).entrySet()));
+        }
+    }
+
+    @Test
+    void rowsAreReadableInAnyOrder() throws Exception {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) rows.add(row("id", String.valueOf(i), "v" + (i % 7), "x".repeat(i % 50)));
+
+        SpilledRows spilled = spill(rows);
+
+        for (int i = rows.size() - 1; i >= 0; i -= 37) assertEquals(rows.get(i), spilled.get(i));
+    }
+
+    @Test
+    void deleteRemovesFile() throws Exception {
+        SpilledRows spilled = spill(List.of(row("id", "1")));
+        assertTrue(Files.exists(spilled.file()));
+
+        spilled.delete();
+
+        assertFalse(Files.exists(spilled.file()));
+    }
+
+    private SpilledRows spill(List<Map<String, Object>> rows) throws Exception {
+        RowSpill spill = new RowSpill(dir.resolve("rows.spill"));
+        for (Map<String, Object> row : rows) spill.append(row);
+        return spill.finish();
+    }
+
+    private static Map<String, Object> row(String... kv) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < kv.length; i += 2) row.put(kv[i], kv[i + 1]);
+        return row;
+    }
+}
@@ -0,0 +1,194 @@
+package com.vilkha.xml;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XmlCatalogParserTest {
+
+    // entities, CDATA, mixed content, nested attributes in non-alphabetical order, DOCTYPE
+    private static final String FEED = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <!DOCTYPE yml_catalog SYSTEM "shops.dtd">
+            <yml_catalog date="2024-01-01 10:00">
+            <shop>
+            <currencies>
+              <currency id="RUR" rate="1" plus="0" z="a"/>
+              <currency id="USD" rate="90.5"/>
+            </currencies>
+            <categories>
+              <category id="1">Tools</category>
+              <category id="2" parentId="1">Saws &amp; blades</category>
+            </categories>
+            <offers>
+            <offer id="10" available="true" type="vendor.model" bid="3"><vendorCode>A1</vendorCode>
+              <price>10.50</price>
+              <params>
+                <param name="\u0426\u0432\u0435\u0442" unit="\u0448\u0442" z="1" a="2">red &amp; "blue" &lt;x&gt; 'q'</param>
+                <param name="b"><![CDATA[<cdata>]]> tail</param>
+                <param name="e"/>
+                <group k="1">lead <sub x="y">inner</sub> mid <sub>2</sub></group>
+              </params>
+              <pictures><picture>http://a/b.jpg?x=1&amp;y=2</picture><picture>  spaced  </picture></pictures>
+            </offer>
+            <offer id="11" available="false"><vendorCode>B2</vendorCode><price>7</price><description/></offer>
+            </offers>
+            </shop>
+            </yml_catalog>
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void domAndSpillPathsReadIdenticalRowsAndSchemas() throws Exception {
+        Path feed = write("feed.xml", FEED);
+        Path spillDir = Files.createDirectory(dir.resolve("spill"));
+
+        XmlCatalogParser dom = new XmlCatalogParser(feed.toUri().toString());
+        XmlCatalogParser spill = new XmlCatalogParser(feed.toUri().toString(), spillDir);
+
+        for (String table : dom.getTableNames()) {
+            List<Map<String, Object>> domRows = dom.readRows(table);
+            List<Map<String, Object>> spillRows = spill.readRows(table);
+
+            assertEquals(domRows.size(), spillRows.size(), table);
+            for (int i = 0; i < domRows.size(); i++) {
+                // compare entry order too, it decides the column order of the generated DDL
+                assertEquals(new ArrayList<>(domRows.get(i).entrySet()),
+                        new ArrayList<>(spillRows.get(i).entrySet()), table + " row " + i);
+            }
+
+            String idColumn = "offers".equals(table) ? "vendorCode" : "id";
+            assertEquals(new ArrayList<>(dom.inferSchema(table, idColumn).entrySet()),
+                    new ArrayList<>(spill.inferSchema(table, idColumn).entrySet()), table);
+        }
+    }
+
+    @Test
+    void failedSpillParseLeavesNoFiles() throws Exception {
+        Path feed = write("truncated.xml", FEED.substring(0, FEED.indexOf("<offer id=\"11\"")));
+        Path spillDir = Files.createDirectory(dir.resolve("spill"));
+
+        XmlCatalogParser parser = new XmlCatalogParser(feed.toUri().toString(), spillDir);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(Exception.class, parser::snapshot);
+        }
+
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+
+    @Test
+    void unchangedCatalogDateKeepsSnapshotButAdoptsNewValidators() throws Exception {
+        byte[] body = FEED.strip().getBytes(StandardCharsets.UTF_8);
+        List<String> ifNoneMatch = new ArrayList<>();
+        AtomicInteger version = new AtomicInteger(1);
+
+        HttpServer server = server(ex -> {
+            String etag = "\"v" + version.get() + "\"";
+            ifNoneMatch.add(ex.getRequestHeaders().getFirst("If-None-Match"));
+            ex.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+                ex.sendResponseHeaders(304, -1);
+            } else {
+                ex.sendResponseHeaders(200, body.length);
+                ex.getResponseBody().write(body);
+            }
+        });
+        try {
+            XmlCatalogParser parser = new XmlCatalogParser(url(server), null, Duration.ofNanos(1), null, 0);
+
+            CatalogSnapshot first = parser.snapshot();
+            version.set(2);
+            CatalogSnapshot second = parser.snapshot();
+            CatalogSnapshot third = parser.snapshot();
+
+            assertSame(first, second);
+            assertSame(first, third);
+            assertEquals(Arrays.asList(null, "\"v1\"", "\"v2\""), ifNoneMatch);
+            assertEquals(2, parser.getCacheStats().get(0).refreshes());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void hangingServerTimesOutAndKeepsCachedFeed() throws Exception {
+        byte[] body = FEED.strip().getBytes(StandardCharsets.UTF_8);
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        HttpServer server = server(ex -> {
+            if (requests.incrementAndGet() > 1) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            ex.sendResponseHeaders(200, body.length);
+            ex.getResponseBody().write(body);
+        });
+        try {
+            XmlCatalogParser parser = new XmlCatalogParser(url(server), null, Duration.ofNanos(1), null, 0,
+                    Duration.ofSeconds(1), Duration.ofMillis(200));
+
+            CatalogSnapshot first = parser.snapshot();
+            long start = System.nanoTime();
+            CatalogSnapshot second = parser.snapshot();
+
+            assertSame(first, second);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertEquals(1, parser.getCacheStats().get(0).failedRefreshes());
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer server(HttpHandler handler) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/feed.xml", ex -> {
+            try {
+                handler.handle(ex);
+            } finally {
+                ex.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    private static String url(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/feed.xml";
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.writeString(dir.resolve(name), content.strip(), StandardCharsets.UTF_8);
+    }
+}